@@ -0,0 +1,199 @@
+package com.nalan.widget.viewtranshelper.benchmark;
+
+import com.nalan.widget.viewtranshelper.core.FlingScroller;
+import com.nalan.widget.viewtranshelper.core.PointerDigest;
+import com.nalan.widget.viewtranshelper.core.ShapeTransform;
+import com.nalan.widget.viewtranshelper.core.TransDelta;
+import com.nalan.widget.viewtranshelper.core.TransRectF;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/27.
+ */
+/*
+    ViewTransHelper的状态机依赖MotionEvent、VelocityTracker，无法在JVM上运行
+    这里按ViewTransHelper.processTouchEvent的分支手写了一份简化的状态机，并不驱动真正的ViewTransHelper，
+    两边的分支改动时需要同步；计算全部调用ViewTransHelper同样使用的core代码：
+    - slop判断、focus、span：PointerDigest
+    - historical samples的合成：TransDelta，每个事件一次postTransform，与dispatchDelta一致
+    - drag、scale：InsetTransHelper、OutsetTransHelper实现了TransformCallback，都是ShapeTransform.postTransform
+    - fling：FlingScroller，范围取自getTranslateRange，与getFlingRange一致，每帧的位移交给postTranslate(onFling)
+ */
+public class CoreGestureReplayer {
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_DRAGGING = 1;
+    private static final int STATE_SCALING = 3;
+
+    //fling每帧的时间，120Hz
+    private static final float FRAME_MILLIS = 1000f/120;
+
+    private final ShapeTransform mTarget;
+    private final int mTouchSlop;
+    private final float mSpanSlop;
+    private final float mMinSpan;
+    private final float mTouchSize;
+
+    private final PointerDigest mDigest;
+    private final float[] mDigestX,mDigestY;
+    private final TransDelta mPendingScale;
+    private final FlingScroller mScroller;
+    private final TransRectF mFlingRange;
+
+    private int mTouchState;
+    private float mLastMotionX,mLastMotionY;
+    private float mInitialSpan;
+    private float mLastSpanX,mLastSpanY;
+    private boolean mPendingDrag;
+    private float mPendingMotionX,mPendingMotionY;
+
+    /*
+        touchSlop、minSpan、touchMajor、ppi取xxhdpi设备上ViewConfiguration、dimens.xml中的典型值
+     */
+    public CoreGestureReplayer(ShapeTransform target){
+        this(target,24,160,144,480);
+    }
+
+    public CoreGestureReplayer(ShapeTransform target,int touchSlop,float minSpan,float touchMajor,float ppi){
+        mTarget = target;
+        mTouchSlop = touchSlop;
+        mSpanSlop = touchSlop*2;
+        mMinSpan = minSpan;
+        mTouchSize = touchMajor/2;
+
+        mDigest = new PointerDigest();
+        mDigestX = new float[GestureStream.MAX_POINTERS];
+        mDigestY = new float[GestureStream.MAX_POINTERS];
+        mPendingScale = new TransDelta();
+        mScroller = new FlingScroller(ppi,FlingScroller.DEFAULT_FRICTION);
+        mFlingRange = new TransRectF();
+    }
+
+    /*
+        samplesPerEvent - 每个ACTION_MOVE带的sample数，大于1时与开启setHistoricalSamplesEnabled一致：
+        每个sample都走一遍状态机，结果合并后每个事件只回调一次
+        返回分发的事件数(ACTION_DOWN加上ACTION_MOVE)
+     */
+    public int replay(GestureStream stream,int samplesPerEvent){
+        down(stream.x[0],stream.y[0]);
+        final int frameCount = stream.frameCount;
+        final boolean historical = samplesPerEvent>1;
+        int events = 1;
+        for(int i=1;i<frameCount;i+=samplesPerEvent){
+            final int end = Math.min(frameCount,i+samplesPerEvent);
+            for(int s=i;s<end;s++)
+                move(stream,s,historical);
+            if(historical)
+                flushPendingMove();
+            events++;
+        }
+        mTouchState = STATE_IDLE;
+        return events;
+    }
+
+    private void down(float x,float y){
+        mLastMotionX = x;
+        mLastMotionY = y;
+        mInitialSpan = 0;
+        mTouchState = STATE_IDLE;
+    }
+
+    private void move(GestureStream stream,int frame,boolean historical){
+        final int count = stream.pointerCount;
+        final int offset = frame*GestureStream.MAX_POINTERS;
+        if(count>1){
+            System.arraycopy(stream.x,offset,mDigestX,0,count);
+            System.arraycopy(stream.y,offset,mDigestY,0,count);
+            mDigest.compute(mDigestX,mDigestY,count,-1,mTouchSize);
+            final float spanX = mDigest.getSpanX();
+            final float spanY = mDigest.getSpanY();
+
+            if (mTouchState!=STATE_SCALING && PointerDigest.exceedsSpanSlop(spanX,spanY,mInitialSpan,mMinSpan,mSpanSlop)) {
+                mTouchState = STATE_SCALING;
+                mLastSpanX = spanX;
+                mLastSpanY = spanY;
+            }else if (mTouchState==STATE_SCALING) {
+                final float sx = spanX/mLastSpanX;
+                final float sy = spanY/mLastSpanY;
+                if(historical)
+                    mPendingScale.postScale(sx,sy,mDigest.getFocusX(),mDigest.getFocusY());
+                else
+                    mTarget.postTransform(sx,sy,mDigest.getFocusX(),mDigest.getFocusY(),0,0);
+                mLastSpanX = spanX;
+                mLastSpanY = spanY;
+            }
+        }else{
+            float x = stream.x[offset];
+            float y = stream.y[offset];
+            int dx = (int) (x-mLastMotionX);
+            int dy = (int) (y-mLastMotionY);
+            if(mTouchState!=STATE_DRAGGING){
+                if(PointerDigest.exceedsTouchSlop(dx,dy,mTouchSlop,mTarget.canDragHorizontal(),mTarget.canDragVertical()))
+                    mTouchState = STATE_DRAGGING;
+            }else if(historical){
+                mPendingDrag = true;
+                mPendingMotionX = x;
+                mPendingMotionY = y;
+            }else{
+                mTarget.postTransform(1,1,0,0,dx,dy);
+                mLastMotionX = x;
+                mLastMotionY = y;
+            }
+        }
+    }
+
+    //与ViewTransHelper.flushPendingMove一致
+    private void flushPendingMove(){
+        if(mPendingScale.hasScale()){
+            mTarget.postTransform(mPendingScale.getScaleX(),mPendingScale.getScaleY(),mPendingScale.getPivotX(),mPendingScale.getPivotY(),
+                    mPendingScale.getTranslateX(),mPendingScale.getTranslateY());
+            mPendingScale.reset();
+        }
+
+        if(mPendingDrag){
+            mTarget.postTransform(1,1,0,0,(int) (mPendingMotionX-mLastMotionX),(int) (mPendingMotionY-mLastMotionY));
+            mLastMotionX = mPendingMotionX;
+            mLastMotionY = mPendingMotionY;
+            mPendingDrag = false;
+        }
+    }
+
+    /*
+        与ScrollRunnable一致：范围是真实的边界，每帧把位移差交给onFling，返回true或者FlingScroller结束时停止
+        为了让benchmark每次的帧数固定，最多跑maxFrames帧，返回实际产生的帧数
+     */
+    public int fling(int xVel,int yVel,int maxFrames){
+        mTarget.getTranslateRange(mFlingRange);
+        mScroller.fling(0,0,xVel,yVel,(int) Math.floor(mFlingRange.left),(int) Math.ceil(mFlingRange.right),
+                (int) Math.floor(mFlingRange.top),(int) Math.ceil(mFlingRange.bottom),0);
+        if(mScroller.getFinalX()==0 && mScroller.getFinalY()==0){
+            mScroller.abortAnimation();
+            return 0;
+        }
+
+        int lastX = 0,lastY = 0;
+        int frames = 0;
+        while (frames<maxFrames && mScroller.computeScrollOffset((long) ((frames+1)*FRAME_MILLIS))){
+            final int curX = mScroller.getCurrX();
+            final int curY = mScroller.getCurrY();
+            final int dx = curX-lastX;
+            final int dy = curY-lastY;
+            lastX = curX;
+            lastY = curY;
+            frames++;
+
+            //位移为0的帧不回调
+            if((dx!=0 || dy!=0) && mTarget.postTranslate(dx,dy)){
+                mScroller.abortAnimation();
+                break;
+            }
+            if(mScroller.isFinished())
+                break;
+        }
+        return frames;
+    }
+
+    //与zoom动画duration<=0时一致，一次onTransform
+    public void doubleTap(float x,float y,float scaleLevel){
+        mTarget.postTransform(scaleLevel,scaleLevel,x,y,0,0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.nalan.widget.viewtranshelper.benchmark;
+
+import com.nalan.widget.viewtranshelper.core.InsetTransform;
+import com.nalan.widget.viewtranshelper.core.OutsetTransform;
+import com.nalan.widget.viewtranshelper.core.ShapeTransform;
+import com.nalan.widget.viewtranshelper.core.TransRect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/27.
+ */
+/*
+    只测core中的边界计算(ShapeTransform、PointerDigest、TransDelta、FlingScroller)，不经过ViewTransHelper
+    MotionEvent的读取、VelocityTracker、invalidate、postOnAnimation等android一侧的开销都不在结果里，
+    完整的触摸路径用androidTest中的ViewTransHelperAllocationTest在设备上检查
+    drag、pinch重放FRAMES帧的触摸流，结果是ns/event，event指实际分发的MotionEvent(含ACTION_DOWN)
+    开启historical samples后，每HISTORICAL_SAMPLES帧合成一个ACTION_MOVE，事件数是HISTORICAL_EVENTS，单独的benchmark方法按它归一化
+    加上-prof gc(build.gradle中默认开启)，gc.alloc.rate.norm就是每个事件分配的字节数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoreTransformBenchmark {
+    //2秒、120Hz
+    private static final int FRAMES = 240;
+    //每个ACTION_MOVE带的sample数，与CoreGestureReplayer.replay的分组一致：1个ACTION_DOWN，剩下的帧每组一个ACTION_MOVE
+    private static final int HISTORICAL_SAMPLES = 4;
+    private static final int HISTORICAL_EVENTS = 1+(FRAMES-1+HISTORICAL_SAMPLES-1)/HISTORICAL_SAMPLES;
+    private static final int FLING_FRAMES = 240;
+    private static final int FLING_VELOCITY = 5000;
+
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Param({"inset","outset"})
+    public String helper;
+
+    private ShapeTransform mTransform;
+    private CoreGestureReplayer mReplayer;
+    private GestureStream mDrag;
+
+    //pinch的手指数，只影响pinch
+    @State(Scope.Thread)
+    public static class PinchParams {
+        @Param({"2","10"})
+        public int pointers;
+
+        GestureStream stream;
+
+        @Setup(Level.Trial)
+        public void setupStream(){
+            stream = GestureStream.pinch(FRAMES,pointers,VIEW_WIDTH/2,VIEW_HEIGHT/2,150,450);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupStreams(){
+        mDrag = GestureStream.drag(FRAMES,VIEW_WIDTH/2,VIEW_HEIGHT/2,6);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupTransform(){
+        TransRect viewport = new TransRect(0,0,VIEW_WIDTH,VIEW_HEIGHT);
+        if("inset".equals(helper)){
+            InsetTransform transform = new InsetTransform();
+            transform.setup(viewport,400,300,100,100);
+            mTransform = transform;
+        }else{
+            OutsetTransform transform = new OutsetTransform();
+            transform.setup(viewport,VIEW_WIDTH*2,VIEW_HEIGHT*2,VIEW_WIDTH*8,VIEW_HEIGHT*8);
+            mTransform = transform;
+        }
+        mReplayer = new CoreGestureReplayer(mTransform);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int drag(){
+        return mReplayer.replay(mDrag,1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HISTORICAL_EVENTS)
+    public int dragHistorical(){
+        return mReplayer.replay(mDrag,HISTORICAL_SAMPLES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int pinch(PinchParams pinch){
+        return mReplayer.replay(pinch.stream,1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HISTORICAL_EVENTS)
+    public int pinchHistorical(PinchParams pinch){
+        return mReplayer.replay(pinch.stream,HISTORICAL_SAMPLES);
+    }
+
+    /*
+        上下来回fling，直到跑满FLING_FRAMES帧，结果是ns/frame
+        到达边界、不能移动的fling算作1帧，然后换方向
+     */
+    @Benchmark
+    @OperationsPerInvocation(FLING_FRAMES)
+    public int fling(){
+        int frames = 0;
+        int velocity = FLING_VELOCITY;
+        while (frames<FLING_FRAMES){
+            frames += Math.max(1,mReplayer.fling(0,velocity,FLING_FRAMES-frames));
+            velocity = -velocity;
+        }
+        return frames;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public ShapeTransform doubleTap(){
+        mReplayer.doubleTap(VIEW_WIDTH/2,VIEW_HEIGHT/2,1.2f);
+        mReplayer.doubleTap(VIEW_WIDTH/2,VIEW_HEIGHT/2,1/1.2f);
+        return mTransform;
+    }
+}
@@ -0,0 +1,61 @@
+package com.nalan.widget.viewtranshelper.benchmark;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/27.
+ */
+/*
+    合成的触摸流，按帧保存所有pointer的坐标
+    frame i的第p个pointer: x[i*MAX_POINTERS+p]、y[i*MAX_POINTERS+p]
+ */
+public class GestureStream {
+    public static final int MAX_POINTERS = 10;
+
+    public final int frameCount;
+    public final int pointerCount;
+    public final float[] x;
+    public final float[] y;
+
+    private GestureStream(int frameCount,int pointerCount){
+        this.frameCount = frameCount;
+        this.pointerCount = pointerCount;
+        x = new float[frameCount*MAX_POINTERS];
+        y = new float[frameCount*MAX_POINTERS];
+    }
+
+    //单指来回拖动，每帧移动step像素
+    public static GestureStream drag(int frameCount,float startX,float startY,float step){
+        GestureStream stream = new GestureStream(frameCount,1);
+        final int half = frameCount/2;
+        float cx = startX,cy = startY;
+        for(int i=0;i<frameCount;i++){
+            float dir = i<half ? 1 : -1;
+            cx += dir*step;
+            cy += dir*step*0.5f;
+            stream.x[i*MAX_POINTERS] = cx;
+            stream.y[i*MAX_POINTERS] = cy;
+        }
+        return stream;
+    }
+
+    //pointerCount个手指围绕(cx,cy)均匀分布，半径先张开再收回
+    public static GestureStream pinch(int frameCount,int pointerCount,float cx,float cy,float minRadius,float maxRadius){
+        if(pointerCount<2 || pointerCount>MAX_POINTERS)
+            throw new IllegalArgumentException("pointerCount错误");
+
+        GestureStream stream = new GestureStream(frameCount,pointerCount);
+        for(int i=0;i<frameCount;i++){
+            double phase = Math.PI*2*i/frameCount;
+            float radius = (float) (minRadius+(maxRadius-minRadius)*(1-Math.cos(phase))/2);
+            //focus也跟着轻微移动
+            float fx = cx+(float) Math.sin(phase)*20;
+            float fy = cy+(float) Math.cos(phase)*20;
+            for(int p=0;p<pointerCount;p++){
+                double angle = Math.PI*2*p/pointerCount;
+                stream.x[i*MAX_POINTERS+p] = fx+(float) Math.cos(angle)*radius;
+                stream.y[i*MAX_POINTERS+p] = fy+(float) Math.sin(angle)*radius;
+            }
+        }
+        return stream;
+    }
+}
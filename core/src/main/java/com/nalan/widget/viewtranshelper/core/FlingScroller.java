@@ -0,0 +1,217 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/7/4.
+ */
+/*
+    android.widget.Scroller(API 14以后)fling模式的纯java实现：同样的spline曲线
+    碰到边界的轴与OverScroller一致：按spline的速度到达边界后停止，而不是在整个duration内慢慢靠近边界，另一个轴继续
+    时间由调用者给出(毫秒，通常是AnimationUtils.currentAnimationTimeMillis())，可以直接在JVM上测试、benchmark
+    ppi - 屏幕的像素密度，即density*160；friction - ViewConfiguration.getScrollFriction()
+ */
+public class FlingScroller {
+    //ViewConfiguration.getScrollFriction()的默认值
+    public static final float DEFAULT_FRICTION = 0.015f;
+
+    private static final float GRAVITY_EARTH = 9.80665f;
+    private static final float INCHES_PER_METER = 39.37f;
+    private static final float DECELERATION_RATE = (float) (Math.log(0.78)/Math.log(0.9));
+    private static final float INFLEXION = 0.35f;
+    private static final float START_TENSION = 0.5f;
+    private static final float END_TENSION = 1.0f;
+    private static final float P1 = START_TENSION*INFLEXION;
+    private static final float P2 = 1.0f-END_TENSION*(1.0f-INFLEXION);
+
+    private static final int NB_SAMPLES = 100;
+    private static final float[] SPLINE_POSITION = new float[NB_SAMPLES+1];
+    //SPLINE_POSITION的反函数，移动距离的比例 -> 时间的比例
+    private static final float[] SPLINE_TIME = new float[NB_SAMPLES+1];
+
+    static {
+        float xMin = 0.0f;
+        float yMin = 0.0f;
+        for(int i=0;i<NB_SAMPLES;i++){
+            final float alpha = (float) i/NB_SAMPLES;
+            float xMax = 1.0f;
+            float x,tx,coef;
+            while (true){
+                x = xMin+(xMax-xMin)/2.0f;
+                coef = 3.0f*x*(1.0f-x);
+                tx = coef*((1.0f-x)*P1+x*P2)+x*x*x;
+                if(Math.abs(tx-alpha)<1E-5)
+                    break;
+                if(tx>alpha)
+                    xMax = x;
+                else
+                    xMin = x;
+            }
+            SPLINE_POSITION[i] = coef*((1.0f-x)*START_TENSION+x)+x*x*x;
+
+            float yMax = 1.0f;
+            float y,dy;
+            while (true){
+                y = yMin+(yMax-yMin)/2.0f;
+                coef = 3.0f*y*(1.0f-y);
+                dy = coef*((1.0f-y)*START_TENSION+y)+y*y*y;
+                if(Math.abs(dy-alpha)<1E-5)
+                    break;
+                if(dy>alpha)
+                    yMax = y;
+                else
+                    yMin = y;
+            }
+            SPLINE_TIME[i] = coef*((1.0f-y)*P1+y*P2)+y*y*y;
+        }
+        SPLINE_POSITION[NB_SAMPLES] = 1.0f;
+        SPLINE_TIME[NB_SAMPLES] = 1.0f;
+    }
+
+    private final float mPhysicalCoeff;
+    private final float mFriction;
+
+    private int mStartX,mStartY;
+    private int mFinalX,mFinalY;
+    private int mMinX,mMaxX,mMinY,mMaxY;
+    private int mCurrX,mCurrY;
+    private long mStartTime;
+    //没有边界时spline的duration和每个轴的距离
+    private int mSplineDuration;
+    private int mSplineDistanceX,mSplineDistanceY;
+    //每个轴到达final的时间，碰到边界的轴更短；mDuration是两者中较长的
+    private int mDurationX,mDurationY;
+    private int mDuration;
+    private boolean mFinished;
+
+    public FlingScroller(float ppi,float friction){
+        mPhysicalCoeff = GRAVITY_EARTH*INCHES_PER_METER*ppi*0.84f;
+        mFriction = friction;
+        mFinished = true;
+    }
+
+    //velocity - px/s，time - 开始的时间，毫秒
+    public void fling(int startX,int startY,int velocityX,int velocityY,
+                      int minX,int maxX,int minY,int maxY,long time){
+        mFinished = false;
+        final float velocity = (float) Math.hypot(velocityX,velocityY);
+        mSplineDuration = splineFlingDuration(velocity);
+        mStartTime = time;
+        mStartX = startX;
+        mStartY = startY;
+        mCurrX = startX;
+        mCurrY = startY;
+
+        final float coeffX = velocity==0 ? 1.0f : velocityX/velocity;
+        final float coeffY = velocity==0 ? 1.0f : velocityY/velocity;
+        final double totalDistance = splineFlingDistance(velocity);
+
+        mMinX = minX;
+        mMaxX = maxX;
+        mMinY = minY;
+        mMaxY = maxY;
+        mSplineDistanceX = (int) Math.round(totalDistance*coeffX);
+        mSplineDistanceY = (int) Math.round(totalDistance*coeffY);
+        mFinalX = clamp(startX+mSplineDistanceX,minX,maxX);
+        mFinalY = clamp(startY+mSplineDistanceY,minY,maxY);
+        mDurationX = axisDuration(mSplineDistanceX,mFinalX-startX);
+        mDurationY = axisDuration(mSplineDistanceY,mFinalY-startY);
+        mDuration = Math.max(mDurationX,mDurationY);
+    }
+
+    //与OverScroller.SplineOverScroller.adjustDuration一致：spline走完clamp之后的距离所需的时间
+    private int axisDuration(int splineDistance,int distance){
+        if(distance==splineDistance)
+            return mSplineDuration;
+
+        final float x = Math.abs((float) distance/splineDistance);
+        final int index = (int) (NB_SAMPLES*x);
+        if(index>=NB_SAMPLES)
+            return mSplineDuration;
+        final float xInf = (float) index/NB_SAMPLES;
+        final float xSup = (float) (index+1)/NB_SAMPLES;
+        final float tInf = SPLINE_TIME[index];
+        final float tSup = SPLINE_TIME[index+1];
+        final float timeCoef = tInf+(x-xInf)/(xSup-xInf)*(tSup-tInf);
+        return (int) (mSplineDuration*timeCoef);
+    }
+
+    //与Scroller.computeScrollOffset一致，已经结束时返回false
+    public boolean computeScrollOffset(long time){
+        if(mFinished)
+            return false;
+
+        final int timePassed = (int) (time-mStartTime);
+        if(timePassed<mDuration){
+            //两个轴沿同一条spline移动，到达自己的duration后停在final
+            final float t = (float) timePassed/mSplineDuration;
+            final int index = (int) (NB_SAMPLES*t);
+            float distanceCoef = 1.f;
+            if(index<NB_SAMPLES){
+                final float tInf = (float) index/NB_SAMPLES;
+                final float tSup = (float) (index+1)/NB_SAMPLES;
+                final float dInf = SPLINE_POSITION[index];
+                final float dSup = SPLINE_POSITION[index+1];
+                distanceCoef = dInf+(t-tInf)*(dSup-dInf)/(tSup-tInf);
+            }
+
+            mCurrX = timePassed>=mDurationX ? mFinalX : clamp(mStartX+Math.round(distanceCoef*mSplineDistanceX),mMinX,mMaxX);
+            mCurrY = timePassed>=mDurationY ? mFinalY : clamp(mStartY+Math.round(distanceCoef*mSplineDistanceY),mMinY,mMaxY);
+            if(mCurrX==mFinalX && mCurrY==mFinalY)
+                mFinished = true;
+        }else{
+            mCurrX = mFinalX;
+            mCurrY = mFinalY;
+            mFinished = true;
+        }
+        return true;
+    }
+
+    public void abortAnimation(){
+        mCurrX = mFinalX;
+        mCurrY = mFinalY;
+        mFinished = true;
+    }
+
+    public boolean isFinished(){
+        return mFinished;
+    }
+
+    public int getCurrX(){
+        return mCurrX;
+    }
+
+    public int getCurrY(){
+        return mCurrY;
+    }
+
+    public int getFinalX(){
+        return mFinalX;
+    }
+
+    public int getFinalY(){
+        return mFinalY;
+    }
+
+    //毫秒，两个轴中较晚停止的那个
+    public int getDuration(){
+        return mDuration;
+    }
+
+    private double splineDeceleration(float velocity){
+        return Math.log(INFLEXION*Math.abs(velocity)/(mFriction*mPhysicalCoeff));
+    }
+
+    private int splineFlingDuration(float velocity){
+        final double l = splineDeceleration(velocity);
+        return (int) (1000.0*Math.exp(l/(DECELERATION_RATE-1.0)));
+    }
+
+    private double splineFlingDistance(float velocity){
+        final double l = splineDeceleration(velocity);
+        return mFriction*mPhysicalCoeff*Math.exp(DECELERATION_RATE/(DECELERATION_RATE-1.0)*l);
+    }
+
+    private static int clamp(int value,int min,int max){
+        return Math.max(min,Math.min(max,value));
+    }
+}
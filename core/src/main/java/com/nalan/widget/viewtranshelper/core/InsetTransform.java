@@ -0,0 +1,59 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/20.
+ */
+/*
+    insert指shape放大或者移动，不管怎么变换始终都在viewport内
+ */
+public class InsetTransform extends ShapeTransform {
+    private int mShapeWidthMin,mShapeHeightMin;
+
+    /*
+        viewport - 视口，显示的区域
+        shapeWidth、shapeHeight - 需要变换的区域的初始大小，初始时它的(left,top)与viewport的(left,top)一致
+        minWidth、minHeight - 最小为多少，不允许为0是因为可以缩放
+     */
+    public void setup(TransRect viewport,int shapeWidth,int shapeHeight,int minWidth,int minHeight){
+        if(minWidth>viewport.width() || minHeight>viewport.height()
+                || minWidth==0 || minHeight==0 || shapeWidth==0 || shapeHeight==0
+                || shapeWidth<minWidth || shapeHeight<minHeight
+                ||shapeWidth>viewport.width() || shapeHeight>viewport.height())
+            throw new IllegalArgumentException("大小错误");
+
+        mShapeWidthMin = minWidth;
+        mShapeHeightMin = minHeight;
+        init(viewport,shapeWidth,shapeHeight);
+    }
+
+    @Override
+    public boolean canDragHorizontal() {
+        return mShapeWidthMin<mViewport.width();
+    }
+
+    @Override
+    public boolean canDragVertical() {
+        return mShapeHeightMin<mViewport.height();
+    }
+
+    @Override
+    protected float clampWidth(float width) {
+        return clamp(width,mShapeWidthMin,mViewport.width());
+    }
+
+    @Override
+    protected float clampHeight(float height) {
+        return clamp(height,mShapeHeightMin,mViewport.height());
+    }
+
+    @Override
+    protected float clampLeft(float left, float width) {
+        return clamp(left,mViewport.left,mViewport.right-width);
+    }
+
+    @Override
+    protected float clampTop(float top, float height) {
+        return clamp(top,mViewport.top,mViewport.bottom-height);
+    }
+}
@@ -0,0 +1,107 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/27.
+ */
+/*
+    固定大小的对数分桶直方图，record、getPercentile都不分配内存
+    小于16的值每个值一个桶，之后每个2的幂次分成16个桶，相对误差不超过1/16
+    单位由调用者决定，ViewTransHelper中是微秒
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1<<SUB_BITS;
+    //超过2^MAX_EXPONENT的值都记到最后一个桶
+    private static final int MAX_EXPONENT = 30;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT-SUB_BITS+2)*SUB_COUNT;
+
+    private final int[] mCounts = new int[BUCKET_COUNT];
+    private int mCount;
+    private long mSum;
+    private long mMin,mMax;
+
+    public LatencyHistogram(){
+        reset();
+    }
+
+    public void reset(){
+        for(int i=0;i<BUCKET_COUNT;i++)
+            mCounts[i] = 0;
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    //负数当作0
+    public void record(long value){
+        if(value<0)
+            value = 0;
+        mCounts[bucketIndex(value)]++;
+        mCount++;
+        mSum += value;
+        if(value<mMin)
+            mMin = value;
+        if(value>mMax)
+            mMax = value;
+    }
+
+    public int getCount(){
+        return mCount;
+    }
+
+    public long getMin(){
+        return mCount==0 ? 0 : mMin;
+    }
+
+    public long getMax(){
+        return mMax;
+    }
+
+    public long getMean(){
+        return mCount==0 ? 0 : mSum/mCount;
+    }
+
+    /*
+        percentile - 0到100，例如50、90、99
+        返回所在桶的上界，不会超过记录过的最大值；没有数据时返回0
+     */
+    public long getPercentile(double percentile){
+        if(mCount==0)
+            return 0;
+
+        long target = (long) Math.ceil(percentile/100*mCount);
+        if(target<1)
+            target = 1;
+
+        long seen = 0;
+        for(int i=0;i<BUCKET_COUNT;i++){
+            seen += mCounts[i];
+            if(seen>=target)
+                return Math.min(bucketUpper(i),mMax);
+        }
+        return mMax;
+    }
+
+    static int bucketIndex(long value){
+        if(value<SUB_COUNT)
+            return (int) value;
+
+        int exponent = 63-Long.numberOfLeadingZeros(value);
+        if(exponent>MAX_EXPONENT)
+            return BUCKET_COUNT-1;
+        final int sub = (int) (value>>(exponent-SUB_BITS))&(SUB_COUNT-1);
+        return (exponent-SUB_BITS+1)*SUB_COUNT+sub;
+    }
+
+    static long bucketUpper(int index){
+        if(index<SUB_COUNT)
+            return index;
+
+        final int exponent = index/SUB_COUNT+SUB_BITS-1;
+        final int sub = index%SUB_COUNT;
+        final long lower = (long) (SUB_COUNT+sub)<<(exponent-SUB_BITS);
+        return lower+(1L<<(exponent-SUB_BITS))-1;
+    }
+}
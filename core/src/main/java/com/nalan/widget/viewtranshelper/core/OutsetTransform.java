@@ -0,0 +1,59 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/20.
+ */
+/*
+    outset指shape放大或者移动，不管怎么变换始终都将viewport包裹在内
+ */
+public class OutsetTransform extends ShapeTransform {
+    private int mShapeWidthMax,mShapeHeightMax;
+
+    /*
+        viewport - 视口，显示的区域
+        shapeWidth、shapeHeight - 需要变换的区域的初始大小，初始时它的(left,top)与viewport的(left,top)一致
+        maxWidth、maxHeight - 最大为多少
+     */
+    public void setup(TransRect viewport,int shapeWidth,int shapeHeight,int maxWidth,int maxHeight){
+        if(maxWidth<viewport.width() || maxHeight<viewport.height()
+                || viewport.width()==0 || viewport.height()==0 || shapeWidth==0 || shapeHeight==0
+                || shapeWidth<viewport.width() || shapeHeight<viewport.height()
+                ||shapeWidth>maxWidth || shapeHeight>maxHeight)
+            throw new IllegalArgumentException("大小错误");
+
+        mShapeWidthMax = maxWidth;
+        mShapeHeightMax = maxHeight;
+        init(viewport,shapeWidth,shapeHeight);
+    }
+
+    @Override
+    public boolean canDragHorizontal() {
+        return mShapeWidthMax>mViewport.width();
+    }
+
+    @Override
+    public boolean canDragVertical() {
+        return mShapeHeightMax>mViewport.height();
+    }
+
+    @Override
+    protected float clampWidth(float width) {
+        return clamp(width,mViewport.width(),mShapeWidthMax);
+    }
+
+    @Override
+    protected float clampHeight(float height) {
+        return clamp(height,mViewport.height(),mShapeHeightMax);
+    }
+
+    @Override
+    protected float clampLeft(float left, float width) {
+        return clamp(left,mViewport.right-width,mViewport.left);
+    }
+
+    @Override
+    protected float clampTop(float top, float height) {
+        return clamp(top,mViewport.bottom-height,mViewport.top);
+    }
+}
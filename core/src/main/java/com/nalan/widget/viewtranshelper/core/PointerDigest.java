@@ -0,0 +1,81 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/7/4.
+ */
+/*
+    多个pointer的focus、span，与ScaleGestureDetector的计算方式一致：
+    focus是平均位置，span是各个pointer到focus的平均距离加上手指的半径，再乘2
+    坐标由调用者从MotionEvent中读出到数组里，这里只在数组上计算
+ */
+public class PointerDigest {
+    private float mFocusX,mFocusY;
+    private float mSpanX,mSpanY;
+
+    /*
+        xs、ys - 前count个是pointer的坐标
+        skipIndex - 不参与计算的pointer(ACTION_POINTER_UP抬起的那个)，没有时为-1
+        touchSize - 手指接触面的半径
+     */
+    public void compute(float[] xs,float[] ys,int count,int skipIndex,float touchSize){
+        final int div = skipIndex>=0 && skipIndex<count ? count-1 : count;
+
+        float sumX = 0,sumY = 0;
+        for(int i=0;i<count;i++){
+            if(i==skipIndex)
+                continue;
+            sumX += xs[i];
+            sumY += ys[i];
+        }
+        final float focusX = sumX/div;
+        final float focusY = sumY/div;
+
+        float devSumX = 0,devSumY = 0;
+        for(int i=0;i<count;i++){
+            if(i==skipIndex)
+                continue;
+            devSumX += Math.abs(xs[i]-focusX);
+            devSumY += Math.abs(ys[i]-focusY);
+        }
+
+        mFocusX = focusX;
+        mFocusY = focusY;
+        mSpanX = (devSumX/div+touchSize)*2;
+        mSpanY = (devSumY/div+touchSize)*2;
+    }
+
+    public float getFocusX(){
+        return mFocusX;
+    }
+
+    public float getFocusY(){
+        return mFocusY;
+    }
+
+    public float getSpanX(){
+        return mSpanX;
+    }
+
+    public float getSpanY(){
+        return mSpanY;
+    }
+
+    //drag是否超出touch slop，只在可以drag的方向上判断
+    public static boolean exceedsTouchSlop(int dx,int dy,int touchSlop,boolean dragX,boolean dragY){
+        if(dragX && dragY)
+            return dx*dx+dy*dy>touchSlop*touchSlop;
+        else if(dragX)
+            return Math.abs(dx)>touchSlop;
+        else if(dragY)
+            return Math.abs(dy)>touchSlop;
+        return false;
+    }
+
+    //span不小于minSpan，并且与开始时相比变化超过spanSlop，才进入scale
+    public static boolean exceedsSpanSlop(float spanX,float spanY,float initialSpan,float minSpan,float spanSlop){
+        final float spanSquare = spanX*spanX+spanY*spanY;
+        return spanSquare>=minSpan*minSpan
+                && Math.abs(spanSquare-initialSpan*initialSpan)>spanSlop*spanSlop;
+    }
+}
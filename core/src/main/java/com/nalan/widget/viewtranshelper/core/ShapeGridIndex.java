@@ -0,0 +1,185 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/17.
+ */
+/*
+    大量shape的hit test，把区域分成cellSize大小的格子，每个格子记录与它相交的shape
+    查询只需要检查(x,y)所在格子里的shape，与shape总数无关
+    shape移动时只有跨越格子才需要更新格子，id由调用者分配，从0开始连续
+    z越大越靠上，后加入的shape在上面
+ */
+public class ShapeGridIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private final float mOriginX,mOriginY;
+    private final float mCellSize;
+    private final int mColumns,mRows;
+
+    private final int[][] mCells;
+    private final int[] mCellCounts;
+
+    //每个shape：bounds、占用的格子范围(c0,r0,c1,r1)、z
+    private float[] mBounds;
+    private int[] mRanges;
+    private int[] mZ;
+    private boolean[] mPresent;
+    private int mNextZ;
+
+    /*
+        area - 需要索引的区域，超出的部分归到边上的格子
+        cellSize - 格子的大小，与shape的典型大小相当时效果最好
+     */
+    public ShapeGridIndex(TransRect area,int cellSize){
+        if(area.width()<=0 || area.height()<=0 || cellSize<=0)
+            throw new IllegalArgumentException("大小错误");
+
+        mOriginX = area.left;
+        mOriginY = area.top;
+        mCellSize = cellSize;
+        mColumns = (area.width()+cellSize-1)/cellSize;
+        mRows = (area.height()+cellSize-1)/cellSize;
+        mCells = new int[mColumns*mRows][];
+        mCellCounts = new int[mColumns*mRows];
+
+        mBounds = new float[INITIAL_CAPACITY*4];
+        mRanges = new int[INITIAL_CAPACITY*4];
+        mZ = new int[INITIAL_CAPACITY];
+        mPresent = new boolean[INITIAL_CAPACITY];
+    }
+
+    //加入或者更新id的范围
+    public void put(int id,float left,float top,float right,float bottom){
+        ensureCapacity(id+1);
+
+        final int c0 = column(left);
+        final int r0 = row(top);
+        final int c1 = column(right);
+        final int r1 = row(bottom);
+
+        final int offset = id*4;
+        mBounds[offset] = left;
+        mBounds[offset+1] = top;
+        mBounds[offset+2] = right;
+        mBounds[offset+3] = bottom;
+
+        if(mPresent[id]){
+            if(mRanges[offset]==c0 && mRanges[offset+1]==r0 && mRanges[offset+2]==c1 && mRanges[offset+3]==r1)
+                return;
+            removeFromCells(id);
+        }else{
+            mPresent[id] = true;
+            mZ[id] = mNextZ++;
+        }
+
+        mRanges[offset] = c0;
+        mRanges[offset+1] = r0;
+        mRanges[offset+2] = c1;
+        mRanges[offset+3] = r1;
+        for(int r=r0;r<=r1;r++){
+            for(int c=c0;c<=c1;c++)
+                addToCell(r*mColumns+c,id);
+        }
+    }
+
+    public void remove(int id){
+        if(id>=mPresent.length || !mPresent[id])
+            return;
+        removeFromCells(id);
+        mPresent[id] = false;
+    }
+
+    public boolean contains(int id){
+        return id<mPresent.length && mPresent[id];
+    }
+
+    public void bringToFront(int id){
+        if(contains(id))
+            mZ[id] = mNextZ++;
+    }
+
+    //(x,y)处最上面的shape，没有返回-1
+    public int findTopmost(float x,float y){
+        final int cell = row(y)*mColumns+column(x);
+        final int[] ids = mCells[cell];
+        final int count = mCellCounts[cell];
+
+        int topmost = -1;
+        int topZ = Integer.MIN_VALUE;
+        for(int i=0;i<count;i++){
+            final int id = ids[i];
+            final int offset = id*4;
+            if(x>=mBounds[offset] && x<=mBounds[offset+2] && y>=mBounds[offset+1] && y<=mBounds[offset+3]
+                    && mZ[id]>topZ){
+                topmost = id;
+                topZ = mZ[id];
+            }
+        }
+        return topmost;
+    }
+
+    private int column(float x){
+        int c = (int) Math.floor((x-mOriginX)/mCellSize);
+        return Math.max(0,Math.min(c,mColumns-1));
+    }
+
+    private int row(float y){
+        int r = (int) Math.floor((y-mOriginY)/mCellSize);
+        return Math.max(0,Math.min(r,mRows-1));
+    }
+
+    private void addToCell(int cell,int id){
+        int[] ids = mCells[cell];
+        final int count = mCellCounts[cell];
+        if(ids==null){
+            ids = new int[INITIAL_CELL_CAPACITY];
+            mCells[cell] = ids;
+        }else if(count==ids.length){
+            int[] grown = new int[count*2];
+            System.arraycopy(ids,0,grown,0,count);
+            ids = grown;
+            mCells[cell] = ids;
+        }
+        ids[count] = id;
+        mCellCounts[cell] = count+1;
+    }
+
+    private void removeFromCells(int id){
+        final int offset = id*4;
+        for(int r=mRanges[offset+1];r<=mRanges[offset+3];r++){
+            for(int c=mRanges[offset];c<=mRanges[offset+2];c++){
+                final int cell = r*mColumns+c;
+                final int[] ids = mCells[cell];
+                final int count = mCellCounts[cell];
+                for(int i=0;i<count;i++){
+                    if(ids[i]==id){
+                        ids[i] = ids[count-1];
+                        mCellCounts[cell] = count-1;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity<=mPresent.length)
+            return;
+
+        int newCapacity = Math.max(capacity,mPresent.length*2);
+        float[] bounds = new float[newCapacity*4];
+        System.arraycopy(mBounds,0,bounds,0,mBounds.length);
+        mBounds = bounds;
+        int[] ranges = new int[newCapacity*4];
+        System.arraycopy(mRanges,0,ranges,0,mRanges.length);
+        mRanges = ranges;
+        int[] z = new int[newCapacity];
+        System.arraycopy(mZ,0,z,0,mZ.length);
+        mZ = z;
+        boolean[] present = new boolean[newCapacity];
+        System.arraycopy(mPresent,0,present,0,mPresent.length);
+        mPresent = present;
+    }
+}
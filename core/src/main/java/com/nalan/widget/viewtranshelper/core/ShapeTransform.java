@@ -0,0 +1,176 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/20.
+ */
+/*
+    InsetTransHelper、OutsetTransHelper共用的边界计算，纯java实现，可以直接在JVM上测试、benchmark
+    shape - 当前变换后的区域，用float保存，不会因为取整而漂移；viewport - 视口
+    matrix - 把(0,0,shapeWidth,shapeHeight)映射到当前shape，每次变换后由shape直接写入，只有scale、translate
+    子类只需要给出shape的大小、位置的合法范围
+ */
+public abstract class ShapeTransform {
+    protected final TransRect mViewport;
+    protected int mShapeWidth,mShapeHeight;
+
+    private final TransRectF mShape;
+    //mShape四舍五入后的结果，给只需要整数的地方使用
+    private final TransRect mCurrentShape;
+    private final TransMatrix mMatrix;
+
+    protected ShapeTransform(){
+        mViewport = new TransRect();
+        mShape = new TransRectF();
+        mCurrentShape = new TransRect();
+        mMatrix = new TransMatrix();
+    }
+
+    //参数由子类检查
+    protected void init(TransRect viewport,int shapeWidth,int shapeHeight){
+        mViewport.set(viewport);
+        mShapeWidth = shapeWidth;
+        mShapeHeight = shapeHeight;
+
+        mShape.set(mViewport.left,mViewport.top,mViewport.left+shapeWidth,mViewport.top+shapeHeight);
+        writeMatrix();
+    }
+
+    public TransMatrix getMatrix(){
+        return mMatrix;
+    }
+
+    public TransRect getCurrentShape(){
+        return mCurrentShape;
+    }
+
+    public TransRectF getCurrentShapeF(){
+        return mShape;
+    }
+
+    public TransRect getViewport(){
+        return mViewport;
+    }
+
+    //setup时shape的大小
+    public int getShapeWidth(){
+        return mShapeWidth;
+    }
+
+    public int getShapeHeight(){
+        return mShapeHeight;
+    }
+
+    /*
+        设置shape的大小，dst会被修正到合法范围
+     */
+    public void setCurrentShape(TransRect dst){
+        float width = clampWidth(dst.width());
+        float height = clampHeight(dst.height());
+        float left = clampLeft(dst.left,width);
+        float top = clampTop(dst.top,height);
+        mShape.set(left,top,left+width,top+height);
+        writeMatrix();
+        dst.set(mCurrentShape);
+    }
+
+    //返回true表示x、y两个方向都已到达边界
+    public boolean postTranslate(float dx,float dy){
+        final TransRectF shape = mShape;
+        final float width = shape.width();
+        final float height = shape.height();
+        float left = clampLeft(shape.left+dx,width);
+        float top = clampTop(shape.top+dy,height);
+        boolean overX = left!=shape.left+dx;
+        boolean overY = top!=shape.top+dy;
+
+        shape.set(left,top,left+width,top+height);
+        writeMatrix();
+        return overX && overY;
+    }
+
+    /*
+        当前位置还能平移的范围，left、right为x方向的最小、最大值，top、bottom为y方向的
+        fling时用它作为Scroller的边界
+     */
+    public void getTranslateRange(TransRectF out){
+        final TransRectF shape = mShape;
+        final float width = shape.width();
+        final float height = shape.height();
+        out.left = clampLeft(-Float.MAX_VALUE,width)-shape.left;
+        out.right = clampLeft(Float.MAX_VALUE,width)-shape.left;
+        out.top = clampTop(-Float.MAX_VALUE,height)-shape.top;
+        out.bottom = clampTop(Float.MAX_VALUE,height)-shape.top;
+    }
+
+    /*
+        直接算出修正后的大小，再围绕(px,py)按实际的比例缩放，最后修正位置
+     */
+    public void postScale(float sx,float sy,float px,float py){
+        postTransform(sx,sy,px,py,0,0);
+    }
+
+    /*
+        先围绕(px,py)缩放，再平移(dx,dy)，整个变换只修正一次
+        返回true表示x、y两个方向的平移都被边界挡住
+     */
+    public boolean postTransform(float sx,float sy,float px,float py,float dx,float dy){
+        boolean over = computeTransform(sx,sy,px,py,dx,dy,mShape);
+        writeMatrix();
+        return over;
+    }
+
+    /*
+        与postTransform相同的计算，结果写入out，不改变当前的状态
+        用于预测fling、缩放动画结束时的shape
+     */
+    public void predictTransform(float sx,float sy,float px,float py,float dx,float dy,TransRectF out){
+        computeTransform(sx,sy,px,py,dx,dy,out);
+    }
+
+    //shape到matrix的映射，与getMatrix一致
+    public void getShapeMatrix(TransRectF shape,TransMatrix out){
+        out.setScaleTranslate(shape.width()/mShapeWidth,shape.height()/mShapeHeight,shape.left,shape.top);
+    }
+
+    private boolean computeTransform(float sx,float sy,float px,float py,float dx,float dy,TransRectF out){
+        final TransRectF shape = mShape;
+        final float srcWidth = shape.width();
+        final float srcHeight = shape.height();
+        float width = clampWidth(srcWidth*sx);
+        float height = clampHeight(srcHeight*sy);
+
+        float targetLeft = px+(shape.left-px)*(width/srcWidth)+dx;
+        float targetTop = py+(shape.top-py)*(height/srcHeight)+dy;
+        float left = clampLeft(targetLeft,width);
+        float top = clampTop(targetTop,height);
+
+        out.set(left,top,left+width,top+height);
+        return left!=targetLeft && top!=targetTop;
+    }
+
+    //根据shape计算出matrix
+    private void writeMatrix(){
+        final TransRectF shape = mShape;
+        getShapeMatrix(shape,mMatrix);
+        mCurrentShape.set(Math.round(shape.left),Math.round(shape.top),Math.round(shape.right),Math.round(shape.bottom));
+    }
+
+    public abstract boolean canDragHorizontal();
+
+    public abstract boolean canDragVertical();
+
+    //宽度的合法范围
+    protected abstract float clampWidth(float width);
+
+    protected abstract float clampHeight(float height);
+
+    //宽度为width时，left的合法范围
+    protected abstract float clampLeft(float left,float width);
+
+    protected abstract float clampTop(float top,float height);
+
+    static float clamp(float value,float min,float max){
+        return Math.max(min,Math.min(value,max));
+    }
+}
@@ -0,0 +1,79 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/28.
+ */
+/*
+    一维的触摸预测，把当前的值外推horizon毫秒：offset = velocity*horizon*damping
+    velocity可以由调用者给出(例如VelocityTracker)，也可以由addSample的差分得到
+    新的sample到来时offset不直接跳到新的目标，而是按correction向它靠近，避免内容来回抖动
+    correction为1时没有平滑，为0时offset不再变化
+ */
+public class TouchPredictor {
+    //差分得到的velocity的平滑系数
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+
+    private float mHorizon;
+    private float mDamping;
+    private float mCorrection;
+
+    private float mOffset;
+    private float mVelocity;
+    private long mLastTime;
+    private float mLastValue;
+    private boolean mHasSample;
+
+    public TouchPredictor(){
+        setup(0,1,1);
+    }
+
+    /*
+        horizon - 外推的时间，毫秒，通常是一个vsync
+        damping - 0到1，预测量的比例
+        correction - 0到1，每次向新的预测值靠近的比例
+     */
+    public void setup(float horizon,float damping,float correction){
+        mHorizon = horizon;
+        mDamping = damping;
+        mCorrection = correction;
+    }
+
+    //手势状态变化时调用，offset、velocity归零
+    public void reset(){
+        mOffset = 0;
+        mVelocity = 0;
+        mHasSample = false;
+    }
+
+    //time - 毫秒
+    public void addSample(long time,float value){
+        if(mHasSample && time>mLastTime){
+            float velocity = (value-mLastValue)/(time-mLastTime);
+            mVelocity += (velocity-mVelocity)*VELOCITY_SMOOTHING;
+        }
+        mLastTime = time;
+        mLastValue = value;
+        mHasSample = true;
+    }
+
+    //使用addSample得到的velocity
+    public float predict(){
+        return predict(mVelocity);
+    }
+
+    //velocity - 每毫秒的变化量，返回应该加在当前值上的offset
+    public float predict(float velocity){
+        final float target = velocity*mHorizon*mDamping;
+        mOffset += (target-mOffset)*mCorrection;
+        return mOffset;
+    }
+
+    public float getOffset(){
+        return mOffset;
+    }
+
+    public float getVelocity(){
+        return mVelocity;
+    }
+}
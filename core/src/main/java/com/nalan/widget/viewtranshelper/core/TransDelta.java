@@ -0,0 +1,114 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/3.
+ */
+/*
+    把多次translate、围绕不同focus的scale合成为一次变换，每个方向上都是 x' = scale*x + offset
+    输出时拆成：先围绕pivot缩放scale，再平移translate
+ */
+public class TransDelta {
+    //scale与1的差小于这个值时，pivot没有意义，使用最后一次的focus
+    private static final float SCALE_EPSILON = 1e-4f;
+
+    private float mScaleX,mScaleY;
+    private float mOffsetX,mOffsetY;
+    private float mLastPivotX,mLastPivotY;
+    private boolean mHasScale,mHasTranslate;
+
+    public TransDelta(){
+        reset();
+    }
+
+    public void reset(){
+        mScaleX = 1;
+        mScaleY = 1;
+        mOffsetX = 0;
+        mOffsetY = 0;
+        mHasScale = false;
+        mHasTranslate = false;
+    }
+
+    public boolean isEmpty(){
+        return !mHasScale && !mHasTranslate;
+    }
+
+    public boolean hasScale(){
+        return mHasScale;
+    }
+
+    public boolean hasTranslate(){
+        return mHasTranslate;
+    }
+
+    public void postTranslate(float dx,float dy){
+        mOffsetX += dx;
+        mOffsetY += dy;
+        mHasTranslate = true;
+    }
+
+    //x'' = sx*(x'-px)+px
+    public void postScale(float sx,float sy,float px,float py){
+        mScaleX *= sx;
+        mOffsetX = (mOffsetX-px)*sx+px;
+        mScaleY *= sy;
+        mOffsetY = (mOffsetY-py)*sy+py;
+        mLastPivotX = px;
+        mLastPivotY = py;
+        mHasScale = true;
+    }
+
+    //在当前的结果之后再作用other：x'' = other.scale*x'+other.offset，不经过pivot，没有精度问题
+    public void postConcat(TransDelta other){
+        if(other.isEmpty())
+            return;
+
+        mScaleX *= other.mScaleX;
+        mOffsetX = mOffsetX*other.mScaleX+other.mOffsetX;
+        mScaleY *= other.mScaleY;
+        mOffsetY = mOffsetY*other.mScaleY+other.mOffsetY;
+        if(other.mHasScale){
+            mLastPivotX = other.mLastPivotX;
+            mLastPivotY = other.mLastPivotY;
+            mHasScale = true;
+        }
+        mHasTranslate |= other.mHasTranslate;
+    }
+
+    public float getScaleX(){
+        return mScaleX;
+    }
+
+    public float getScaleY(){
+        return mScaleY;
+    }
+
+    //scale*x+offset = scale*(x-p)+p+t，没有translate时p=offset/(1-scale)，t=0
+    public float getPivotX(){
+        return pivot(mScaleX,mOffsetX,mLastPivotX,mHasTranslate);
+    }
+
+    public float getPivotY(){
+        return pivot(mScaleY,mOffsetY,mLastPivotY,mHasTranslate);
+    }
+
+    //围绕pivot缩放以后剩余的平移
+    public float getTranslateX(){
+        if(!mHasScale)
+            return mOffsetX;
+        return mOffsetX-(1-mScaleX)*getPivotX();
+    }
+
+    public float getTranslateY(){
+        if(!mHasScale)
+            return mOffsetY;
+        return mOffsetY-(1-mScaleY)*getPivotY();
+    }
+
+    private static float pivot(float scale,float offset,float lastPivot,boolean hasTranslate){
+        if(hasTranslate || Math.abs(1-scale)<SCALE_EPSILON)
+            return lastPivot;
+        return offset/(1-scale);
+    }
+}
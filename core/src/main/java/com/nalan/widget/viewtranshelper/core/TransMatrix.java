@@ -0,0 +1,143 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/20.
+ */
+/*
+    纯java的仿射变换，只用primitive float，不依赖android.graphics.Matrix
+    值的排列与android.graphics.Matrix一致，getValues后可以直接setValues给Matrix
+ */
+public class TransMatrix {
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    private float mScaleX,mSkewX,mTransX;
+    private float mSkewY,mScaleY,mTransY;
+
+    public TransMatrix(){
+        reset();
+    }
+
+    public void reset(){
+        mScaleX = 1;
+        mSkewX = 0;
+        mTransX = 0;
+        mSkewY = 0;
+        mScaleY = 1;
+        mTransY = 0;
+    }
+
+    public void set(TransMatrix src){
+        mScaleX = src.mScaleX;
+        mSkewX = src.mSkewX;
+        mTransX = src.mTransX;
+        mSkewY = src.mSkewY;
+        mScaleY = src.mScaleY;
+        mTransY = src.mTransY;
+    }
+
+    public void setScaleTranslate(float sx,float sy,float dx,float dy){
+        mScaleX = sx;
+        mSkewX = 0;
+        mTransX = dx;
+        mSkewY = 0;
+        mScaleY = sy;
+        mTransY = dy;
+    }
+
+    public void postTranslate(float dx,float dy){
+        mTransX += dx;
+        mTransY += dy;
+    }
+
+    //M' = S(sx,sy,px,py) * M
+    public void postScale(float sx,float sy,float px,float py){
+        mScaleX *= sx;
+        mSkewX *= sx;
+        mTransX = (mTransX-px)*sx+px;
+
+        mSkewY *= sy;
+        mScaleY *= sy;
+        mTransY = (mTransY-py)*sy+py;
+    }
+
+    public float getScaleX(){
+        return mScaleX;
+    }
+
+    public float getScaleY(){
+        return mScaleY;
+    }
+
+    public float getTranslateX(){
+        return mTransX;
+    }
+
+    public float getTranslateY(){
+        return mTransY;
+    }
+
+    public void setTranslate(float dx,float dy){
+        mTransX = dx;
+        mTransY = dy;
+    }
+
+    public float mapX(float x,float y){
+        return mScaleX*x+mSkewX*y+mTransX;
+    }
+
+    public float mapY(float x,float y){
+        return mSkewY*x+mScaleY*y+mTransY;
+    }
+
+    //与Matrix.mapRect一致，结果是4个顶点变换后的包围盒
+    public void mapRect(TransRectF rect){
+        final float l = rect.left,t = rect.top,r = rect.right,b = rect.bottom;
+        float x0 = mapX(l,t),y0 = mapY(l,t);
+        float x1 = mapX(r,t),y1 = mapY(r,t);
+        float x2 = mapX(l,b),y2 = mapY(l,b);
+        float x3 = mapX(r,b),y3 = mapY(r,b);
+
+        rect.left = Math.min(Math.min(x0,x1),Math.min(x2,x3));
+        rect.right = Math.max(Math.max(x0,x1),Math.max(x2,x3));
+        rect.top = Math.min(Math.min(y0,y1),Math.min(y2,y3));
+        rect.bottom = Math.max(Math.max(y0,y1),Math.max(y2,y3));
+    }
+
+    /*
+        values长度至少为9
+     */
+    public void getValues(float[] values){
+        values[MSCALE_X] = mScaleX;
+        values[MSKEW_X] = mSkewX;
+        values[MTRANS_X] = mTransX;
+        values[MSKEW_Y] = mSkewY;
+        values[MSCALE_Y] = mScaleY;
+        values[MTRANS_Y] = mTransY;
+        values[MPERSP_0] = 0;
+        values[MPERSP_1] = 0;
+        values[MPERSP_2] = 1;
+    }
+
+    public void setValues(float[] values){
+        mScaleX = values[MSCALE_X];
+        mSkewX = values[MSKEW_X];
+        mTransX = values[MTRANS_X];
+        mSkewY = values[MSKEW_Y];
+        mScaleY = values[MSCALE_Y];
+        mTransY = values[MTRANS_Y];
+    }
+
+    @Override
+    public String toString() {
+        return "TransMatrix[" + mScaleX + ", " + mSkewX + ", " + mTransX + "][" + mSkewY + ", " + mScaleY + ", " + mTransY + "]";
+    }
+}
@@ -0,0 +1,65 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/20.
+ */
+//整数矩形，语义与android.graphics.Rect一致：left、top包含，right、bottom不包含
+public class TransRect {
+    public int left,top,right,bottom;
+
+    public TransRect(){
+    }
+
+    public TransRect(int left,int top,int right,int bottom){
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(int left,int top,int right,int bottom){
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(TransRect src){
+        left = src.left;
+        top = src.top;
+        right = src.right;
+        bottom = src.bottom;
+    }
+
+    public int width(){
+        return right-left;
+    }
+
+    public int height(){
+        return bottom-top;
+    }
+
+    public void offset(int dx,int dy){
+        left += dx;
+        right += dx;
+        top += dy;
+        bottom += dy;
+    }
+
+    //与Rect.contains一致，空矩形不包含任何点
+    public boolean contains(int x,int y){
+        return left<right && top<bottom
+                && x>=left && x<right && y>=top && y<bottom;
+    }
+
+    //src是否完全在当前矩形内
+    public boolean contains(TransRect src){
+        return src.left>=left && src.top>=top && src.right<=right && src.bottom<=bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "TransRect(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+    }
+}
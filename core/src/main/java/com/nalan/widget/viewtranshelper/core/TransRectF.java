@@ -0,0 +1,73 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/5/20.
+ */
+//浮点矩形，语义与android.graphics.RectF一致
+public class TransRectF {
+    public float left,top,right,bottom;
+
+    public TransRectF(){
+    }
+
+    public TransRectF(float left,float top,float right,float bottom){
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(float left,float top,float right,float bottom){
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(TransRectF src){
+        left = src.left;
+        top = src.top;
+        right = src.right;
+        bottom = src.bottom;
+    }
+
+    public void set(TransRect src){
+        left = src.left;
+        top = src.top;
+        right = src.right;
+        bottom = src.bottom;
+    }
+
+    public float width(){
+        return right-left;
+    }
+
+    public float height(){
+        return bottom-top;
+    }
+
+    public float centerX(){
+        return (left+right)*0.5f;
+    }
+
+    public float centerY(){
+        return (top+bottom)*0.5f;
+    }
+
+    public void offset(float dx,float dy){
+        left += dx;
+        right += dx;
+        top += dy;
+        bottom += dy;
+    }
+
+    public boolean contains(float x,float y){
+        return x>=left && x<=right && y>=top && y<=bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "TransRectF(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+    }
+}
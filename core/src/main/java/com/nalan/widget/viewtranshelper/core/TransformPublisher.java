@@ -0,0 +1,64 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/25.
+ */
+/*
+    把matrix、shape从UI线程交给渲染线程(SurfaceView、TextureView)，不加锁
+    sequence lock：写之前sequence变成奇数，写完变回偶数；读的前后sequence相同且为偶数才算读到一致的值，否则重读
+    只允许一个线程publish，可以有多个线程read，读写都不分配内存
+ */
+public class TransformPublisher {
+    private static final int SHAPE_OFFSET = 9;
+    private static final int SIZE = SHAPE_OFFSET+4;
+
+    private final AtomicInteger mSequence = new AtomicInteger();
+    //float按bit存储
+    private final AtomicIntegerArray mData = new AtomicIntegerArray(SIZE);
+    private final float[] mTempValues = new float[9];
+
+    //只能在一个线程调用
+    public void publish(TransMatrix matrix,TransRectF shape){
+        matrix.getValues(mTempValues);
+
+        final int seq = mSequence.get();
+        mSequence.set(seq+1);
+        for(int i=0;i<9;i++)
+            mData.set(i,Float.floatToRawIntBits(mTempValues[i]));
+        mData.set(SHAPE_OFFSET,Float.floatToRawIntBits(shape.left));
+        mData.set(SHAPE_OFFSET+1,Float.floatToRawIntBits(shape.top));
+        mData.set(SHAPE_OFFSET+2,Float.floatToRawIntBits(shape.right));
+        mData.set(SHAPE_OFFSET+3,Float.floatToRawIntBits(shape.bottom));
+        mSequence.set(seq+2);
+    }
+
+    /*
+        读取最新发布的值到out
+        返回false表示自从out上次读取后没有新的发布，out保持不变，渲染线程可以跳过这一帧
+     */
+    public boolean read(TransformSnapshot out){
+        while (true){
+            final int before = mSequence.get();
+            if((before&1)!=0)
+                continue;
+            if(before==0 || before==out.mVersion)
+                return false;
+
+            for(int i=0;i<9;i++)
+                out.mValues[i] = Float.intBitsToFloat(mData.get(i));
+            out.mShape.left = Float.intBitsToFloat(mData.get(SHAPE_OFFSET));
+            out.mShape.top = Float.intBitsToFloat(mData.get(SHAPE_OFFSET+1));
+            out.mShape.right = Float.intBitsToFloat(mData.get(SHAPE_OFFSET+2));
+            out.mShape.bottom = Float.intBitsToFloat(mData.get(SHAPE_OFFSET+3));
+
+            if(mSequence.get()==before){
+                out.mVersion = before;
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/25.
+ */
+/*
+    TransformPublisher发布的一份matrix和shape，由读取的线程持有，读完以后不会再被别的线程修改
+    values的排列与android.graphics.Matrix一致
+ */
+public class TransformSnapshot {
+    final float[] mValues = new float[9];
+    final TransRectF mShape = new TransRectF();
+    //0表示还没有读到过
+    int mVersion;
+
+    public void getValues(float[] out){
+        System.arraycopy(mValues,0,out,0,9);
+    }
+
+    public float getValue(int index){
+        return mValues[index];
+    }
+
+    public TransRectF getShape(){
+        return mShape;
+    }
+
+    public int getVersion(){
+        return mVersion;
+    }
+}
@@ -0,0 +1,71 @@
+package com.nalan.widget.viewtranshelper.core;
+
+/**
+ * Author： liyi
+ * Date：    2017/7/3.
+ */
+/*
+    把连续的scale映射为离散的level：breakpoints从小到大，scale小于breakpoints[0]时level为0，
+    不小于breakpoints[i]、小于breakpoints[i+1]时level为i+1
+    hysteresis是breakpoint两侧的带宽比例，向上越过breakpoint要到breakpoint*(1+hysteresis)，
+    向下要低于breakpoint/(1+hysteresis)，在breakpoint附近来回缩放时level不会反复变化
+ */
+public class ZoomLevelTracker {
+    private float[] mBreakpoints;
+    private float mHysteresis;
+    //-1表示还没有计算过
+    private int mLevel;
+
+    public ZoomLevelTracker(){
+        setup(new float[0],0);
+    }
+
+    //breakpoints会被复制，必须从小到大
+    public void setup(float[] breakpoints,float hysteresis){
+        for(int i=1;i<breakpoints.length;i++){
+            if(breakpoints[i]<=breakpoints[i-1])
+                throw new IllegalArgumentException("breakpoints must be ascending");
+        }
+        if(hysteresis<0)
+            throw new IllegalArgumentException("hysteresis must not be negative");
+
+        mBreakpoints = breakpoints.clone();
+        mHysteresis = hysteresis;
+        mLevel = -1;
+    }
+
+    //下次update直接按breakpoints计算level，不考虑hysteresis
+    public void reset(){
+        mLevel = -1;
+    }
+
+    public int getLevel(){
+        return mLevel;
+    }
+
+    public int getLevelCount(){
+        return mBreakpoints.length+1;
+    }
+
+    //level变化时返回true，reset后的第一次总是返回true
+    public boolean update(float scale){
+        int level = mLevel;
+        if(level<0){
+            level = 0;
+            while (level<mBreakpoints.length && scale>=mBreakpoints[level])
+                level++;
+        }else{
+            final float band = 1+mHysteresis;
+            //一次缩放可能越过多个breakpoint
+            while (level<mBreakpoints.length && scale>=mBreakpoints[level]*band)
+                level++;
+            while (level>0 && scale<mBreakpoints[level-1]/band)
+                level--;
+        }
+
+        if(level==mLevel)
+            return false;
+        mLevel = level;
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * fling只向速度方向移动、不超出范围，duration之后停在final
+ * 碰到边界的轴按spline的速度到达边界后停止，另一个轴继续
+ */
+public class FlingScrollerTest {
+
+    @Test
+    public void fling_movesMonotonicallyAndEndsAtFinal() throws Exception {
+        FlingScroller scroller = new FlingScroller(480,FlingScroller.DEFAULT_FRICTION);
+        scroller.fling(0,0,3000,-1500,-100000,100000,-100000,100000,1000);
+        assertFalse(scroller.isFinished());
+        assertTrue(scroller.getFinalX()>0);
+        assertTrue(scroller.getFinalY()<0);
+
+        int lastX = 0;
+        int lastY = 0;
+        long time = 1000;
+        while (scroller.computeScrollOffset(time)){
+            assertTrue(scroller.getCurrX()>=lastX);
+            assertTrue(scroller.getCurrY()<=lastY);
+            lastX = scroller.getCurrX();
+            lastY = scroller.getCurrY();
+            time += 8;
+        }
+        assertTrue(scroller.isFinished());
+        assertEquals(scroller.getFinalX(),lastX);
+        assertEquals(scroller.getFinalY(),lastY);
+        assertTrue(time-1000<=scroller.getDuration()+8);
+    }
+
+    @Test
+    public void fling_isClampedToRange() throws Exception {
+        FlingScroller scroller = new FlingScroller(480,FlingScroller.DEFAULT_FRICTION);
+        scroller.fling(0,0,8000,8000,-50,50,0,0,0);
+        assertEquals(50,scroller.getFinalX());
+        assertEquals(0,scroller.getFinalY());
+
+        scroller.computeScrollOffset(scroller.getDuration()/2);
+        assertTrue(scroller.getCurrX()<=50);
+        assertEquals(0,scroller.getCurrY());
+    }
+
+    @Test
+    public void abort_jumpsToFinal() throws Exception {
+        FlingScroller scroller = new FlingScroller(480,FlingScroller.DEFAULT_FRICTION);
+        scroller.fling(0,0,2000,0,-100000,100000,-100000,100000,0);
+        scroller.abortAnimation();
+        assertTrue(scroller.isFinished());
+        assertFalse(scroller.computeScrollOffset(10));
+        assertEquals(scroller.getFinalX(),scroller.getCurrX());
+    }
+
+    @Test
+    public void pinnedAxis_reachesEdgeAtSplineSpeedAndStops() throws Exception {
+        FlingScroller scroller = new FlingScroller(480,FlingScroller.DEFAULT_FRICTION);
+        scroller.fling(0,0,3000,3000,-100000,100000,0,50,0);
+        assertEquals(50,scroller.getFinalY());
+        assertTrue(scroller.getFinalX()>50);
+
+        long pinnedTime = -1;
+        for(long time=8;scroller.computeScrollOffset(time);time+=8){
+            if(pinnedTime<0){
+                //到达边界之前两个轴的速度一样
+                if(scroller.getCurrY()<50)
+                    assertEquals(scroller.getCurrX(),scroller.getCurrY(),1);
+                else
+                    pinnedTime = time;
+            }else
+                assertEquals(50,scroller.getCurrY());
+        }
+        assertTrue(pinnedTime>0);
+        assertTrue(pinnedTime<scroller.getDuration()/10);
+        assertEquals(scroller.getFinalX(),scroller.getCurrX());
+    }
+}
@@ -0,0 +1,58 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 与排序后的精确值对比，误差在一个桶以内
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketUpper_containsValue() throws Exception {
+        for(long v=0;v<100000;v+=7){
+            int index = LatencyHistogram.bucketIndex(v);
+            assertTrue(LatencyHistogram.bucketUpper(index)>=v);
+            if(index>0)
+                assertTrue(LatencyHistogram.bucketUpper(index-1)<v);
+        }
+    }
+
+    @Test
+    public void percentiles_matchSortedWithinOneBucket() throws Exception {
+        Random random = new Random(7);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[5000];
+        for(int i=0;i<values.length;i++){
+            values[i] = 4000+(long) (Math.abs(random.nextGaussian())*12000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length,histogram.getCount());
+        assertEquals(values[0],histogram.getMin());
+        assertEquals(values[values.length-1],histogram.getMax());
+        for(double p:new double[]{50,90,99,100}){
+            long exact = values[(int) Math.ceil(p/100*values.length)-1];
+            long actual = histogram.getPercentile(p);
+            assertTrue(actual>=exact);
+            assertTrue(actual<=exact+exact/16+1);
+        }
+    }
+
+    @Test
+    public void reset_clearsEverything() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0,histogram.getPercentile(50));
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0,histogram.getMin());
+        histogram.reset();
+        assertEquals(0,histogram.getCount());
+        assertEquals(0,histogram.getMax());
+    }
+}
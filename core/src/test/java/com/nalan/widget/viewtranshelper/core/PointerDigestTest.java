@@ -0,0 +1,46 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * focus、span与ScaleGestureDetector的计算一致，抬起的pointer不参与
+ */
+public class PointerDigestTest {
+
+    @Test
+    public void twoPointers_focusAndSpan() throws Exception {
+        PointerDigest digest = new PointerDigest();
+        digest.compute(new float[]{100,300},new float[]{200,200},2,-1,10);
+        assertEquals(200,digest.getFocusX(),0);
+        assertEquals(200,digest.getFocusY(),0);
+        //(平均偏差100+半径10)*2
+        assertEquals(220,digest.getSpanX(),0);
+        assertEquals(20,digest.getSpanY(),0);
+    }
+
+    @Test
+    public void skipIndex_isIgnored() throws Exception {
+        PointerDigest digest = new PointerDigest();
+        digest.compute(new float[]{100,9999,300},new float[]{0,9999,0},3,1,0);
+        assertEquals(200,digest.getFocusX(),0);
+        assertEquals(200,digest.getSpanX(),0);
+    }
+
+    @Test
+    public void touchSlop_onlyInDraggableDirections() throws Exception {
+        assertTrue(PointerDigest.exceedsTouchSlop(8,8,10,true,true));
+        assertFalse(PointerDigest.exceedsTouchSlop(6,6,10,true,true));
+        assertFalse(PointerDigest.exceedsTouchSlop(30,0,10,false,true));
+        assertTrue(PointerDigest.exceedsTouchSlop(0,-11,10,false,true));
+        assertFalse(PointerDigest.exceedsTouchSlop(30,30,10,false,false));
+    }
+
+    @Test
+    public void spanSlop_requiresMinSpanAndChange() throws Exception {
+        assertFalse(PointerDigest.exceedsSpanSlop(60,80,0,200,10));
+        assertTrue(PointerDigest.exceedsSpanSlop(300,400,0,200,10));
+        assertFalse(PointerDigest.exceedsSpanSlop(300,400,500,200,10));
+    }
+}
@@ -0,0 +1,77 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 与线性扫描的结果对比
+ */
+public class ShapeGridIndexTest {
+
+    @Test
+    public void findTopmost_prefersLaterAndBroughtToFront() throws Exception {
+        ShapeGridIndex index = new ShapeGridIndex(new TransRect(0,0,1000,1000),100);
+        index.put(0,0,0,300,300);
+        index.put(1,200,200,500,500);
+
+        assertEquals(0,index.findTopmost(50,50));
+        assertEquals(1,index.findTopmost(250,250));
+        assertEquals(-1,index.findTopmost(800,800));
+
+        index.bringToFront(0);
+        assertEquals(0,index.findTopmost(250,250));
+
+        index.remove(0);
+        assertEquals(1,index.findTopmost(250,250));
+        assertEquals(-1,index.findTopmost(50,50));
+    }
+
+    @Test
+    public void put_movesShapeAcrossCells() throws Exception {
+        ShapeGridIndex index = new ShapeGridIndex(new TransRect(0,0,1000,1000),100);
+        index.put(0,0,0,50,50);
+        index.put(0,900,900,950,950);
+
+        assertEquals(-1,index.findTopmost(20,20));
+        assertEquals(0,index.findTopmost(920,920));
+    }
+
+    @Test
+    public void randomShapes_matchLinearScan() throws Exception {
+        final int count = 500;
+        Random random = new Random(42);
+        ShapeGridIndex index = new ShapeGridIndex(new TransRect(0,0,2000,2000),128);
+        float[][] bounds = new float[count][];
+        for(int i=0;i<count;i++){
+            bounds[i] = randomBounds(random);
+            index.put(i,bounds[i][0],bounds[i][1],bounds[i][2],bounds[i][3]);
+        }
+        //一部分移动
+        for(int i=0;i<count;i+=3){
+            bounds[i] = randomBounds(random);
+            index.put(i,bounds[i][0],bounds[i][1],bounds[i][2],bounds[i][3]);
+        }
+
+        for(int q=0;q<2000;q++){
+            float x = random.nextFloat()*2000;
+            float y = random.nextFloat()*2000;
+            int expected = -1;
+            for(int i=0;i<count;i++){
+                float[] b = bounds[i];
+                if(x>=b[0] && x<=b[2] && y>=b[1] && y<=b[3])
+                    expected = i;
+            }
+            assertEquals(expected,index.findTopmost(x,y));
+        }
+    }
+
+    private static float[] randomBounds(Random random){
+        float left = random.nextFloat()*1900;
+        float top = random.nextFloat()*1900;
+        float size = 20+random.nextFloat()*200;
+        return new float[]{left,top,left+size,top+size};
+    }
+}
@@ -0,0 +1,192 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在JVM上验证InsetTransform、OutsetTransform的边界计算
+ */
+public class ShapeTransformTest {
+
+    @Test
+    public void predictTransform_doesNotChangeState() throws Exception {
+        InsetTransform transform = new InsetTransform();
+        transform.setup(new TransRect(0,0,1000,800),200,100,50,50);
+        TransRectF predicted = new TransRectF();
+
+        transform.predictTransform(2,2,100,50,5000,0,predicted);
+        assertEquals("0.0,0.0,200.0,100.0",format(transform.getCurrentShapeF()));
+
+        transform.postTransform(2,2,100,50,5000,0);
+        assertEquals(format(transform.getCurrentShapeF()),format(predicted));
+    }
+
+    private static String format(TransRectF rect){
+        return rect.left+","+rect.top+","+rect.right+","+rect.bottom;
+    }
+
+    @Test
+    public void postTransform_matchesScaleThenTranslate() throws Exception {
+        OutsetTransform expected = new OutsetTransform();
+        expected.setup(new TransRect(0,0,1000,800),1000,800,4000,4000);
+        OutsetTransform actual = new OutsetTransform();
+        actual.setup(new TransRect(0,0,1000,800),1000,800,4000,4000);
+
+        expected.postScale(1.5f,1.5f,300,200);
+        expected.postTranslate(-40,30);
+        assertFalse(actual.postTransform(1.5f,1.5f,300,200,-40,30));
+        assertEquals(expected.getCurrentShapeF().toString(),actual.getCurrentShapeF().toString());
+
+        //平移超出边界，只在最后修正一次
+        assertTrue(actual.postTransform(1,1,0,0,5000,5000));
+        assertEquals(0,actual.getCurrentShape().left);
+        assertEquals(0,actual.getCurrentShape().top);
+    }
+
+    @Test
+    public void inset_translateIsClampedToViewport() throws Exception {
+        InsetTransform transform = new InsetTransform();
+        transform.setup(new TransRect(0,0,1000,800),200,100,50,50);
+
+        assertFalse(transform.postTranslate(300,200));
+        assertEquals(new TransRect(300,200,500,300).toString(),transform.getCurrentShape().toString());
+
+        //x方向到边界，y方向没有
+        assertFalse(transform.postTranslate(5000,10));
+        assertEquals(800,transform.getCurrentShape().left);
+        assertEquals(1000,transform.getCurrentShape().right);
+
+        //两个方向都到边界
+        assertTrue(transform.postTranslate(-5000,-5000));
+        assertEquals(0,transform.getCurrentShape().left);
+        assertEquals(0,transform.getCurrentShape().top);
+        assertEquals(0,transform.getMatrix().getTranslateX(),0);
+        assertEquals(0,transform.getMatrix().getTranslateY(),0);
+    }
+
+    @Test
+    public void inset_scaleIsClampedBetweenMinAndViewport() throws Exception {
+        InsetTransform transform = new InsetTransform();
+        transform.setup(new TransRect(0,0,1000,800),200,100,50,50);
+
+        transform.postScale(100,100,0,0);
+        assertEquals(1000,transform.getCurrentShape().width());
+        assertEquals(800,transform.getCurrentShape().height());
+
+        transform.postScale(0.001f,0.001f,0,0);
+        assertEquals(50,transform.getCurrentShape().width());
+        assertEquals(50,transform.getCurrentShape().height());
+        assertEquals(0.25f,transform.getMatrix().getScaleX(),1e-4f);
+        assertEquals(0.5f,transform.getMatrix().getScaleY(),1e-4f);
+    }
+
+    @Test
+    public void outset_shapeAlwaysCoversViewport() throws Exception {
+        OutsetTransform transform = new OutsetTransform();
+        transform.setup(new TransRect(0,0,1000,800),2000,1600,4000,3200);
+
+        assertTrue(transform.postTranslate(5000,5000));
+        assertEquals(0,transform.getCurrentShape().left);
+        assertEquals(0,transform.getCurrentShape().top);
+
+        assertTrue(transform.postTranslate(-5000,-5000));
+        assertEquals(1000,transform.getCurrentShape().right);
+        assertEquals(800,transform.getCurrentShape().bottom);
+
+        transform.postScale(0.01f,0.01f,500,400);
+        TransRect shape = transform.getCurrentShape();
+        assertTrue(shape.contains(transform.getViewport()));
+        assertEquals(1000,shape.width());
+        assertEquals(800,shape.height());
+    }
+
+    @Test
+    public void pinchBackAndForth_doesNotDrift() throws Exception {
+        InsetTransform transform = new InsetTransform();
+        transform.setup(new TransRect(0,0,1000,800),200,100,50,50);
+        transform.postTranslate(333,222);
+
+        //int取整时，每次来回缩放都会损失一点
+        for(int i=0;i<1000;i++){
+            transform.postScale(1.013f,1.013f,417,259);
+            transform.postScale(1/1.013f,1/1.013f,417,259);
+        }
+        TransRectF shape = transform.getCurrentShapeF();
+        assertEquals(200,shape.width(),0.1f);
+        assertEquals(100,shape.height(),0.1f);
+        assertEquals(333,shape.left,0.1f);
+        assertEquals(222,shape.top,0.1f);
+    }
+
+    @Test
+    public void matrixMapsContentToShape() throws Exception {
+        InsetTransform transform = new InsetTransform();
+        transform.setup(new TransRect(100,50,1100,850),200,100,50,50);
+        transform.postScale(1.5f,2f,150,80);
+        transform.postTranslate(40,30);
+
+        TransRectF content = new TransRectF(0,0,200,100);
+        transform.getMatrix().mapRect(content);
+        TransRectF shape = transform.getCurrentShapeF();
+        assertEquals(shape.left,content.left,1e-3f);
+        assertEquals(shape.top,content.top,1e-3f);
+        assertEquals(shape.right,content.right,1e-3f);
+        assertEquals(shape.bottom,content.bottom,1e-3f);
+    }
+
+    @Test
+    public void setCurrentShape_writesMatrix() throws Exception {
+        OutsetTransform transform = new OutsetTransform();
+        transform.setup(new TransRect(0,0,1000,800),2000,1600,4000,3200);
+
+        TransRect dst = new TransRect(-500,-400,3500,2800);
+        transform.setCurrentShape(dst);
+
+        float[] values = new float[9];
+        transform.getMatrix().getValues(values);
+        assertEquals(2f,values[TransMatrix.MSCALE_X],0);
+        assertEquals(2f,values[TransMatrix.MSCALE_Y],0);
+        assertEquals(-500f,values[TransMatrix.MTRANS_X],0);
+        assertEquals(-400f,values[TransMatrix.MTRANS_Y],0);
+        assertEquals(1f,values[TransMatrix.MPERSP_2],0);
+    }
+
+    @Test
+    public void matrix_postScaleAroundPivot() throws Exception {
+        TransMatrix matrix = new TransMatrix();
+        matrix.postTranslate(10,20);
+        matrix.postScale(2,3,100,100);
+
+        assertEquals(2*(10-100)+100,matrix.getTranslateX(),0);
+        assertEquals(3*(20-100)+100,matrix.getTranslateY(),0);
+
+        TransRectF rect = new TransRectF(0,0,10,10);
+        matrix.mapRect(rect);
+        assertEquals(matrix.getTranslateX(),rect.left,0);
+        assertEquals(matrix.getTranslateX()+20,rect.right,0);
+        assertEquals(matrix.getTranslateY()+30,rect.bottom,0);
+    }
+
+    @Test
+    public void translateRange_matchesClamping() throws Exception {
+        InsetTransform inset = new InsetTransform();
+        inset.setup(new TransRect(0,0,1000,800),200,100,50,50);
+        inset.postTranslate(300,200);
+
+        TransRectF range = new TransRectF();
+        inset.getTranslateRange(range);
+        assertEquals(-300,range.left,0);
+        assertEquals(500,range.right,0);
+        assertEquals(-200,range.top,0);
+        assertEquals(500,range.bottom,0);
+
+        OutsetTransform outset = new OutsetTransform();
+        outset.setup(new TransRect(0,0,1000,800),2000,1600,4000,3200);
+        outset.getTranslateRange(range);
+        assertEquals(-1000,range.left,0);
+        assertEquals(0,range.right,0);
+        assertEquals(-800,range.top,0);
+        assertEquals(0,range.bottom,0);
+    }
+}
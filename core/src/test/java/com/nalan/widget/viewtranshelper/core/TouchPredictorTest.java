@@ -0,0 +1,37 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 匀速运动时预测值应该收敛到horizon之后的位置
+ */
+public class TouchPredictorTest {
+
+    @Test
+    public void constantVelocity_convergesToHorizon() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        predictor.setup(16,1,0.5f);
+        float offset = 0;
+        for(int i=0;i<40;i++){
+            predictor.addSample(i*8,i*8*2f);
+            offset = predictor.predict();
+        }
+        //2 px/ms，16ms
+        assertEquals(32,offset,0.5f);
+    }
+
+    @Test
+    public void stop_offsetDecaysByCorrection() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        predictor.setup(10,0.8f,0.5f);
+        assertEquals(4,predictor.predict(1),1e-4f);
+        assertEquals(6,predictor.predict(1),1e-4f);
+        assertEquals(3,predictor.predict(0),1e-4f);
+
+        predictor.reset();
+        assertEquals(0,predictor.getOffset(),0);
+        assertEquals(0,predictor.getVelocity(),0);
+    }
+}
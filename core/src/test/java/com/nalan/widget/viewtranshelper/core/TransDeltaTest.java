@@ -0,0 +1,108 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 合成后的结果应该与逐次作用在TransMatrix上一致
+ */
+public class TransDeltaTest {
+
+    @Test
+    public void scalesAroundDifferentFocus_composeToOneScale() throws Exception {
+        TransMatrix expected = new TransMatrix();
+        TransDelta delta = new TransDelta();
+
+        float[][] steps = {{1.1f,1.05f,100,200},{1.2f,1.1f,130,180},{0.9f,1.02f,160,150}};
+        for(float[] step:steps){
+            expected.postScale(step[0],step[1],step[2],step[3]);
+            delta.postScale(step[0],step[1],step[2],step[3]);
+        }
+
+        TransMatrix actual = new TransMatrix();
+        actual.postScale(delta.getScaleX(),delta.getScaleY(),delta.getPivotX(),delta.getPivotY());
+        actual.postTranslate(delta.getTranslateX(),delta.getTranslateY());
+
+        assertMatrixEquals(expected,actual);
+        assertEquals(0,delta.getTranslateX(),1e-3f);
+        assertEquals(0,delta.getTranslateY(),1e-3f);
+    }
+
+    @Test
+    public void scaleAndTranslate_composeToScaleThenTranslate() throws Exception {
+        TransMatrix expected = new TransMatrix();
+        TransDelta delta = new TransDelta();
+
+        expected.postTranslate(10,-5);
+        delta.postTranslate(10,-5);
+        expected.postScale(1.5f,1.5f,300,400);
+        delta.postScale(1.5f,1.5f,300,400);
+        expected.postTranslate(-3,7);
+        delta.postTranslate(-3,7);
+
+        TransMatrix actual = new TransMatrix();
+        actual.postScale(delta.getScaleX(),delta.getScaleY(),delta.getPivotX(),delta.getPivotY());
+        actual.postTranslate(delta.getTranslateX(),delta.getTranslateY());
+
+        assertMatrixEquals(expected,actual);
+    }
+
+    @Test
+    public void scaleNearOne_keepsResidualTranslate() throws Exception {
+        TransMatrix expected = new TransMatrix();
+        TransDelta delta = new TransDelta();
+
+        //合成后scale接近1，pivot退化为最后的focus，剩余的平移不能丢
+        expected.postScale(1.02f,1.02f,100,100);
+        delta.postScale(1.02f,1.02f,100,100);
+        expected.postScale(1/1.02f,1/1.02f,600,400);
+        delta.postScale(1/1.02f,1/1.02f,600,400);
+        assertNotEquals(0,delta.getTranslateX(),1e-3f);
+
+        TransMatrix actual = new TransMatrix();
+        actual.postScale(delta.getScaleX(),delta.getScaleY(),delta.getPivotX(),delta.getPivotY());
+        actual.postTranslate(delta.getTranslateX(),delta.getTranslateY());
+        assertMatrixEquals(expected,actual);
+    }
+
+    @Test
+    public void postConcat_matchesSequentialPosts() throws Exception {
+        TransMatrix expected = new TransMatrix();
+        TransDelta delta = new TransDelta();
+        TransDelta other = new TransDelta();
+
+        expected.postTranslate(12,-4);
+        delta.postTranslate(12,-4);
+        expected.postScale(1.3f,0.8f,200,300);
+        other.postScale(1.3f,0.8f,200,300);
+        expected.postTranslate(-6,9);
+        other.postTranslate(-6,9);
+        delta.postConcat(other);
+
+        TransMatrix actual = new TransMatrix();
+        actual.postScale(delta.getScaleX(),delta.getScaleY(),delta.getPivotX(),delta.getPivotY());
+        actual.postTranslate(delta.getTranslateX(),delta.getTranslateY());
+        assertMatrixEquals(expected,actual);
+        assertTrue(delta.hasScale());
+        assertTrue(delta.hasTranslate());
+    }
+
+    @Test
+    public void reset_isEmpty() throws Exception {
+        TransDelta delta = new TransDelta();
+        assertTrue(delta.isEmpty());
+        delta.postScale(2,2,0,0);
+        assertFalse(delta.isEmpty());
+        delta.reset();
+        assertTrue(delta.isEmpty());
+        assertEquals(1,delta.getScaleX(),0);
+    }
+
+    private static void assertMatrixEquals(TransMatrix expected,TransMatrix actual){
+        assertEquals(expected.getScaleX(),actual.getScaleX(),1e-4f);
+        assertEquals(expected.getScaleY(),actual.getScaleY(),1e-4f);
+        assertEquals(expected.getTranslateX(),actual.getTranslateX(),1e-2f);
+        assertEquals(expected.getTranslateY(),actual.getTranslateY(),1e-2f);
+    }
+}
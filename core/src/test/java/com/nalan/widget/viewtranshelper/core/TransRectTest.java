@@ -0,0 +1,27 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * contains与android.graphics.Rect一致：right、bottom不包含，空矩形不包含任何点
+ */
+public class TransRectTest {
+
+    @Test
+    public void containsPoint_excludesRightAndBottom() throws Exception {
+        TransRect rect = new TransRect(10,20,30,40);
+        assertTrue(rect.contains(10,20));
+        assertTrue(rect.contains(29,39));
+        assertFalse(rect.contains(30,39));
+        assertFalse(rect.contains(29,40));
+        assertFalse(rect.contains(9,20));
+    }
+
+    @Test
+    public void containsPoint_emptyRect() throws Exception {
+        assertFalse(new TransRect(10,10,10,20).contains(10,10));
+        assertFalse(new TransRect(10,20,30,20).contains(10,20));
+    }
+}
@@ -0,0 +1,69 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 读线程不应该看到写了一半的值
+ */
+public class TransformPublisherTest {
+
+    @Test
+    public void read_returnsFalseUntilPublished() throws Exception {
+        TransformPublisher publisher = new TransformPublisher();
+        TransformSnapshot snapshot = new TransformSnapshot();
+        assertFalse(publisher.read(snapshot));
+
+        TransMatrix matrix = new TransMatrix();
+        matrix.setScaleTranslate(2,3,10,20);
+        publisher.publish(matrix,new TransRectF(10,20,210,320));
+
+        assertTrue(publisher.read(snapshot));
+        assertEquals(2,snapshot.getValue(TransMatrix.MSCALE_X),0);
+        assertEquals(20,snapshot.getValue(TransMatrix.MTRANS_Y),0);
+        assertEquals(320,snapshot.getShape().bottom,0);
+        assertFalse(publisher.read(snapshot));
+    }
+
+    @Test
+    public void concurrentRead_neverTorn() throws Exception {
+        final TransformPublisher publisher = new TransformPublisher();
+        final int rounds = 200000;
+        final boolean[] torn = new boolean[1];
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TransformSnapshot snapshot = new TransformSnapshot();
+                float last = 0;
+                while (last<rounds){
+                    if(!publisher.read(snapshot))
+                        continue;
+                    //每次发布的所有值都相同
+                    float v = snapshot.getValue(TransMatrix.MSCALE_X);
+                    TransRectF shape = snapshot.getShape();
+                    if(snapshot.getValue(TransMatrix.MTRANS_X)!=v || snapshot.getValue(TransMatrix.MTRANS_Y)!=v
+                            || shape.left!=v || shape.bottom!=v || v<last){
+                        torn[0] = true;
+                        return;
+                    }
+                    last = v;
+                }
+            }
+        });
+        reader.start();
+
+        TransMatrix matrix = new TransMatrix();
+        TransRectF shape = new TransRectF();
+        for(int i=1;i<=rounds;i++){
+            matrix.setScaleTranslate(i,i,i,i);
+            shape.set(i,i,i,i);
+            publisher.publish(matrix,shape);
+        }
+        reader.join(10000);
+
+        assertFalse(reader.isAlive());
+        assertFalse(torn[0]);
+    }
+}
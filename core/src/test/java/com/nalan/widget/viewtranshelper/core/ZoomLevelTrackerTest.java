@@ -0,0 +1,57 @@
+package com.nalan.widget.viewtranshelper.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在breakpoint附近来回缩放时level只在越过hysteresis带时变化
+ */
+public class ZoomLevelTrackerTest {
+
+    @Test
+    public void firstUpdate_ignoresHysteresis() throws Exception {
+        ZoomLevelTracker tracker = new ZoomLevelTracker();
+        tracker.setup(new float[]{1,2,4},0.1f);
+        assertTrue(tracker.update(2.01f));
+        assertEquals(2,tracker.getLevel());
+        assertFalse(tracker.update(2.01f));
+        assertEquals(4,tracker.getLevelCount());
+    }
+
+    @Test
+    public void jitterAroundBreakpoint_doesNotChangeLevel() throws Exception {
+        ZoomLevelTracker tracker = new ZoomLevelTracker();
+        tracker.setup(new float[]{2},0.1f);
+        tracker.update(1.5f);
+        assertEquals(0,tracker.getLevel());
+
+        assertFalse(tracker.update(2.1f));
+        assertFalse(tracker.update(1.9f));
+        assertTrue(tracker.update(2.2f));
+        assertEquals(1,tracker.getLevel());
+
+        assertFalse(tracker.update(1.9f));
+        assertTrue(tracker.update(1.8f));
+        assertEquals(0,tracker.getLevel());
+    }
+
+    @Test
+    public void bigJump_crossesSeveralBreakpoints() throws Exception {
+        ZoomLevelTracker tracker = new ZoomLevelTracker();
+        tracker.setup(new float[]{1,2,4},0.1f);
+        tracker.update(0.5f);
+        assertTrue(tracker.update(10));
+        assertEquals(3,tracker.getLevel());
+        assertTrue(tracker.update(0.1f));
+        assertEquals(0,tracker.getLevel());
+
+        tracker.reset();
+        assertTrue(tracker.update(0.1f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsortedBreakpoints_throws() throws Exception {
+        new ZoomLevelTracker().setup(new float[]{2,1},0);
+    }
+}
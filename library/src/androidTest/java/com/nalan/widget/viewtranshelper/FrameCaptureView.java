@@ -0,0 +1,73 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.View;
+
+/*
+    不attach到window，postOnAnimation的runnable保存下来由测试自己一帧一帧地跑，
+    这样统计到的只有ViewTransHelper以及Callback自身的分配
+    useSharedScheduler之后view假装已经attach，AnimationScheduler中的runnable同样由runFrames运行
+ */
+class FrameCaptureView extends View{
+    static final long FRAME_MS = 8;
+
+    //zoom、fling、frame coalescing可能同时在等下一帧
+    private final Runnable[] mPendingFrames = new Runnable[4];
+    private final Runnable[] mRunningFrames = new Runnable[4];
+    private int mPendingCount;
+    private AnimationScheduler mScheduler;
+
+    FrameCaptureView(Context context) {
+        super(context);
+    }
+
+    void useSharedScheduler(){
+        mScheduler = AnimationScheduler.getInstance();
+    }
+
+    @Override
+    public boolean isAttachedToWindow() {
+        return mScheduler!=null;
+    }
+
+    @Override
+    public void postOnAnimation(Runnable action) {
+        mPendingFrames[mPendingCount++] = action;
+    }
+
+    @Override
+    public boolean removeCallbacks(Runnable action) {
+        for(int i=0;i<mPendingCount;i++){
+            if(mPendingFrames[i]==action){
+                System.arraycopy(mPendingFrames,i+1,mPendingFrames,i,mPendingCount-i-1);
+                mPendingFrames[--mPendingCount] = null;
+                break;
+            }
+        }
+        return super.removeCallbacks(action);
+    }
+
+    @Override
+    public void postInvalidateOnAnimation() {
+    }
+
+    @Override
+    public void postInvalidateOnAnimation(int left, int top, int right, int bottom) {
+    }
+
+    void runFrames(){
+        while (mPendingCount>0 || (mScheduler!=null && mScheduler.hasPending())){
+            final int count = mPendingCount;
+            System.arraycopy(mPendingFrames,0,mRunningFrames,0,count);
+            mPendingCount = 0;
+            SystemClock.sleep(FRAME_MS);
+            for(int i=0;i<count;i++){
+                mRunningFrames[i].run();
+                mRunningFrames[i] = null;
+            }
+            if(mScheduler!=null)
+                mScheduler.runPending();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.nalan.widget.viewtranshelper.FrameCaptureView.FRAME_MS;
+
+/*
+    测试用的手势序列，事件之间间隔一帧，每个ACTION_MOVE带一个半帧之前的历史sample
+ */
+final class GestureEvents {
+
+    private GestureEvents(){
+    }
+
+    interface TouchTarget{
+        void onTouchEvent(MotionEvent ev);
+    }
+
+    //逐个分发事件，每个事件之后把已经post的帧跑完(frame coalescing的一帧、ACTION_UP之后fling、zoom的所有帧)
+    static void replay(FrameCaptureView view,TouchTarget target,List<MotionEvent> events){
+        for(int i=0;i<events.size();i++){
+            target.onTouchEvent(events.get(i));
+            view.runFrames();
+        }
+    }
+
+    static void recycle(List<MotionEvent> events){
+        for(MotionEvent ev:events)
+            ev.recycle();
+    }
+
+    //drag + fling、pinch、double tap
+    static List<MotionEvent> buildGestures(){
+        List<MotionEvent> events = new ArrayList<MotionEvent>();
+        long time = SystemClock.uptimeMillis();
+
+        time = addDrag(events,time,200,150,900,1200);
+        time = addPinch(events,time,300,250);
+        time = addTap(events,time,200,150);
+        addTap(events,time+FRAME_MS*8,200,150);
+        return events;
+    }
+
+    static long addDrag(List<MotionEvent> events,long time,float fromX,float fromY,float toX,float toY){
+        final long downTime = time;
+        final int steps = 12;
+        events.add(obtain(downTime,time,MotionEvent.ACTION_DOWN,fromX,fromY));
+        for(int i=1;i<=steps;i++){
+            float historyX = fromX+(toX-fromX)*(i-0.5f)/steps;
+            float historyY = fromY+(toY-fromY)*(i-0.5f)/steps;
+            MotionEvent ev = obtain(downTime,time+FRAME_MS/2,MotionEvent.ACTION_MOVE,historyX,historyY);
+            time += FRAME_MS;
+            ev.addBatch(time,fromX+(toX-fromX)*i/steps,fromY+(toY-fromY)*i/steps,1,1,0);
+            events.add(ev);
+        }
+        events.add(obtain(downTime,time,MotionEvent.ACTION_UP,toX,toY));
+        return time+FRAME_MS*40;
+    }
+
+    static long addPinch(List<MotionEvent> events,long time,float cx,float cy){
+        final long downTime = time;
+        final int steps = 20;
+        float[] xs = new float[2];
+        float[] ys = new float[2];
+
+        setPinch(xs,ys,cx,cy,60);
+        events.add(obtain(downTime,time,MotionEvent.ACTION_DOWN,xs[0],ys[0]));
+        time += FRAME_MS;
+        events.add(obtain(downTime,time,MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT),xs,ys,2));
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[2];
+        for(int i=1;i<=steps;i++){
+            setPinch(xs,ys,cx,cy,50+i*20);
+            MotionEvent ev = obtain(downTime,time+FRAME_MS/2,MotionEvent.ACTION_MOVE,xs,ys,2);
+            time += FRAME_MS;
+            setPinch(xs,ys,cx,cy,60+i*20);
+            for(int p=0;p<2;p++){
+                coords[p] = new MotionEvent.PointerCoords();
+                ev.getPointerCoords(p,coords[p]);
+                coords[p].x = xs[p];
+                coords[p].y = ys[p];
+            }
+            ev.addBatch(time,coords,0);
+            events.add(ev);
+        }
+        time += FRAME_MS;
+        events.add(obtain(downTime,time,MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT),xs,ys,2));
+        time += FRAME_MS;
+        events.add(obtain(downTime,time,MotionEvent.ACTION_UP,xs[0],ys[0]));
+        return time+FRAME_MS*40;
+    }
+
+    private static void setPinch(float[] xs,float[] ys,float cx,float cy,float radius){
+        xs[0] = cx-radius;
+        ys[0] = cy-radius;
+        xs[1] = cx+radius;
+        ys[1] = cy+radius;
+    }
+
+    static long addTap(List<MotionEvent> events,long time,float x,float y){
+        events.add(obtain(time,time,MotionEvent.ACTION_DOWN,x,y));
+        events.add(obtain(time,time+FRAME_MS*4,MotionEvent.ACTION_UP,x,y));
+        return time+FRAME_MS*4;
+    }
+
+    static MotionEvent obtain(long downTime,long eventTime,int action,float x,float y){
+        return obtain(downTime,eventTime,action,new float[]{x},new float[]{y},1);
+    }
+
+    static MotionEvent obtain(long downTime,long eventTime,int action,float[] xs,float[] ys,int count){
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[count];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[count];
+        for(int i=0;i<count;i++){
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].x = xs[i];
+            coords[i].y = ys[i];
+            coords[i].pressure = 1;
+            coords[i].size = 1;
+            coords[i].touchMajor = 48;
+            coords[i].touchMinor = 48;
+        }
+        return MotionEvent.obtain(downTime,eventTime,action,count,properties,coords,
+                0,0,1,1,0,0,InputDevice.SOURCE_TOUCHSCREEN,0);
+    }
+}
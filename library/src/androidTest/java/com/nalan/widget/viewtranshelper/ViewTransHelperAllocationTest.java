@@ -0,0 +1,299 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+import com.nalan.widget.viewtranshelper.GestureEvents.TouchTarget;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static com.nalan.widget.viewtranshelper.GestureEvents.buildGestures;
+import static com.nalan.widget.viewtranshelper.GestureEvents.replay;
+import static org.junit.Assert.*;
+
+/**
+ * 重放drag、pinch、fling、double tap，统计从ACTION_DOWN到fling结束主线程上的分配次数
+ * 第一遍用来预热(VelocityTracker、framework对象池)，第二遍必须是0分配
+ * 默认配置经过InsetTransHelper、OutsetTransHelper的onTouchEvent，每个可选功能单独开启，分别用两者作为Callback重放一次
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewTransHelperAllocationTest {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Test
+    public void insetHelper_steadyStateIsAllocationFree() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameCaptureView view = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                final InsetTransHelper helper = new InsetTransHelper(view);
+                helper.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),400,300,100,100);
+                assertAllocationFree(view,new TouchTarget() {
+                    @Override
+                    public void onTouchEvent(MotionEvent ev) {
+                        helper.onTouchEvent(ev);
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void outsetHelper_steadyStateIsAllocationFree() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameCaptureView view = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                final OutsetTransHelper helper = new OutsetTransHelper(view);
+                helper.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),VIEW_WIDTH*2,VIEW_HEIGHT*2,VIEW_WIDTH*8,VIEW_HEIGHT*8);
+                assertAllocationFree(view,new TouchTarget() {
+                    @Override
+                    public void onTouchEvent(MotionEvent ev) {
+                        helper.onTouchEvent(ev);
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void frameCoalescing_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                helper.setFrameCoalescingEnabled(true);
+            }
+        });
+    }
+
+    @Test
+    public void historicalSamples_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                helper.setHistoricalSamplesEnabled(true);
+            }
+        });
+    }
+
+    @Test
+    public void touchPrediction_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                helper.setTouchPrediction(16,0.8f,0.5f);
+            }
+        });
+    }
+
+    @Test
+    public void gestureMetrics_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                helper.setGestureMetricsListener(new ViewTransHelper.OnGestureMetricsListener() {
+                    @Override
+                    public void onGestureMetrics(GestureMetrics metrics) {
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void latencyTracking_steadyStateIsAllocationFree() throws Exception {
+        final FrameCaptureView[] views = new FrameCaptureView[2];
+        final ViewTransHelper[] helpers = new ViewTransHelper[2];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                views[0] = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                InsetTransHelper inset = new InsetTransHelper(views[0]);
+                inset.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),400,300,100,100);
+                helpers[0] = new ViewTransHelper(views[0],inset);
+
+                views[1] = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                OutsetTransHelper outset = new OutsetTransHelper(views[1]);
+                outset.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),VIEW_WIDTH*2,VIEW_HEIGHT*2,VIEW_WIDTH*8,VIEW_HEIGHT*8);
+                helpers[1] = new ViewTransHelper(views[1],outset);
+            }
+        });
+        for(int i=0;i<helpers.length;i++){
+            helpers[i].setLatencyTrackingEnabled(true);
+            assertLatencyAllocationFree(views[i],helpers[i]);
+        }
+    }
+
+    @Test
+    public void dirtyRegion_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                helper.setDirtyRegionEnabled(true,8);
+            }
+        });
+    }
+
+    //tap之间的间隔比long press的delay短，只测post、remove long press检查的开销
+    @Test
+    public void tapAndLongPress_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                helper.setOnTapListener(new ViewTransHelper.OnTapListener() {
+                    @Override
+                    public boolean onTap(float x, float y) {
+                        return false;
+                    }
+                });
+                helper.setOnLongPressListener(new ViewTransHelper.OnLongPressListener() {
+                    @Override
+                    public void onLongPress(float x, float y) {
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void sharedScheduler_steadyStateIsAllocationFree() throws Exception {
+        assertOptionAllocationFree(new Option() {
+            @Override
+            public void apply(ViewTransHelper helper, FrameCaptureView view) {
+                view.useSharedScheduler();
+                helper.setSharedAnimationSchedulerEnabled(true);
+            }
+        });
+    }
+
+    //InsetTransHelper、OutsetTransHelper只作为Callback，option直接作用在测试创建的ViewTransHelper上
+    private static void assertOptionAllocationFree(final Option option){
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameCaptureView insetView = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                InsetTransHelper inset = new InsetTransHelper(insetView);
+                inset.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),400,300,100,100);
+                assertAllocationFree(insetView,newHelper(insetView,inset,option));
+
+                FrameCaptureView outsetView = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                OutsetTransHelper outset = new OutsetTransHelper(outsetView);
+                outset.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),VIEW_WIDTH*2,VIEW_HEIGHT*2,VIEW_WIDTH*8,VIEW_HEIGHT*8);
+                assertAllocationFree(outsetView,newHelper(outsetView,outset,option));
+            }
+        });
+    }
+
+    private static TouchTarget newHelper(FrameCaptureView view,ViewTransHelper.Callback callback,Option option){
+        final ViewTransHelper helper = new ViewTransHelper(view,callback);
+        option.apply(helper,view);
+        return new TouchTarget() {
+            @Override
+            public void onTouchEvent(MotionEvent ev) {
+                helper.processTouchEvent(ev);
+            }
+        };
+    }
+
+    private static void runOnMainSync(Runnable runnable){
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    private static void assertAllocationFree(FrameCaptureView view,TouchTarget target){
+        //预热
+        replay(view,target,buildGestures());
+
+        //所有MotionEvent都在统计之前创建好
+        List<MotionEvent> events = buildGestures();
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        replay(view,target,events);
+        int allocCount = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        GestureEvents.recycle(events);
+        assertEquals("allocations during " + events.size() + " events",0,allocCount);
+    }
+
+    //onFrame由Choreographer回调，统计区间内必须让主线程回到looper跑完至少一帧，否则记录路径根本没有执行
+    private static void assertLatencyAllocationFree(final FrameCaptureView view,final ViewTransHelper helper){
+        final TouchTarget target = new TouchTarget() {
+            @Override
+            public void onTouchEvent(MotionEvent ev) {
+                helper.processTouchEvent(ev);
+            }
+        };
+        final FrameWaiter waiter = new FrameWaiter();
+
+        //预热，同时让Choreographer的CallbackRecord进入对象池
+        final List<MotionEvent> warmUp = buildGestures();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                replay(view,target,warmUp);
+            }
+        });
+        waiter.await();
+        GestureEvents.recycle(warmUp);
+
+        final List<MotionEvent> events = buildGestures();
+        final int[] counts = new int[2];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                helper.getLatencyHistogram().reset();
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                replay(view,target,events);
+            }
+        });
+        waiter.await();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                counts[0] = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+                counts[1] = helper.getLatencyHistogram().getCount();
+            }
+        });
+
+        GestureEvents.recycle(events);
+        assertTrue("no frame recorded in the measured region",counts[1]>0);
+        assertEquals("allocations during " + events.size() + " events and one frame",0,counts[0]);
+    }
+
+    //在主线程post一个FrameCallback，排在LatencyTracker之后，它执行时本帧的记录已经完成
+    private static class FrameWaiter implements Choreographer.FrameCallback, Runnable{
+        private volatile boolean mDone;
+
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mDone = true;
+        }
+
+        void await(){
+            mDone = false;
+            runOnMainSync(this);
+            while(!mDone)
+                SystemClock.sleep(FrameCaptureView.FRAME_MS);
+        }
+    }
+
+    private interface Option{
+        void apply(ViewTransHelper helper,FrameCaptureView view);
+    }
+}
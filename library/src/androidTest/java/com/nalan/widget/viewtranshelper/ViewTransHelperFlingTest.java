@@ -0,0 +1,58 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ACTION_DOWN接住fling后直接进入drag，已经post的fling帧不会再把状态改回IDLE
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewTransHelperFlingTest {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Test
+    public void catchFling_keepsDragging() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameCaptureView view = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                OutsetTransHelper shape = new OutsetTransHelper(view);
+                shape.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),VIEW_WIDTH*8,VIEW_HEIGHT*8,VIEW_WIDTH*8,VIEW_HEIGHT*8);
+                ViewTransHelper helper = new ViewTransHelper(view,shape);
+
+                //fling开始后不跑任何帧
+                List<MotionEvent> events = new ArrayList<MotionEvent>();
+                long time = GestureEvents.addDrag(events,SystemClock.uptimeMillis(),540,960,740,1260);
+                for(int i=0;i<events.size();i++)
+                    helper.processTouchEvent(events.get(i));
+                GestureEvents.recycle(events);
+
+                MotionEvent down = GestureEvents.obtain(time,time,MotionEvent.ACTION_DOWN,500,500);
+                helper.processTouchEvent(down);
+                down.recycle();
+                view.runFrames();
+
+                //小于touch slop的移动，只有仍在drag时才会生效
+                Rect before = new Rect(shape.getCurrentShape());
+                MotionEvent move = GestureEvents.obtain(time,time+FrameCaptureView.FRAME_MS,MotionEvent.ACTION_MOVE,505,505);
+                helper.processTouchEvent(move);
+                move.recycle();
+                Rect after = shape.getCurrentShape();
+                assertEquals(before.left+5,after.left);
+                assertEquals(before.top+5,after.top);
+            }
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * touch prediction只影响手指按下期间的位置，抬起以后(包括fling结束)与关闭prediction时完全一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewTransHelperPredictionTest {
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Test
+    public void dragAndFling_endsAtSamePosition() throws Exception {
+        Rect expected = replayDrag(false);
+        Rect predicted = replayDrag(true);
+        assertEquals(expected,predicted);
+    }
+
+    /*
+        shape比viewport大得多，fling不会碰到边界，抬起时残留的预测量会原样留在最终位置上
+     */
+    private static Rect replayDrag(final boolean prediction){
+        final Rect result = new Rect();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameCaptureView view = new FrameCaptureView(InstrumentationRegistry.getTargetContext());
+                final OutsetTransHelper shape = new OutsetTransHelper(view);
+                shape.setup(new Rect(0,0,VIEW_WIDTH,VIEW_HEIGHT),VIEW_WIDTH*8,VIEW_HEIGHT*8,VIEW_WIDTH*8,VIEW_HEIGHT*8);
+                final ViewTransHelper helper = new ViewTransHelper(view,shape);
+                if(prediction)
+                    helper.setTouchPrediction(16,0.8f,0.5f);
+
+                List<MotionEvent> events = new ArrayList<MotionEvent>();
+                GestureEvents.addDrag(events,SystemClock.uptimeMillis(),540,960,740,1260);
+                GestureEvents.replay(view,new GestureEvents.TouchTarget() {
+                    @Override
+                    public void onTouchEvent(MotionEvent ev) {
+                        helper.processTouchEvent(ev);
+                    }
+                },events);
+                GestureEvents.recycle(events);
+                result.set(shape.getCurrentShape());
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/29.
+ */
+/*
+    整个进程共用的动画调度，只能在主线程使用
+    post的语义与View.postOnAnimation一致：runnable在下一帧运行一次，需要继续就再post
+    所有runnable在同一个frame callback里依次运行，没有runnable时不再注册，
+    很多ViewTransHelper同时fling、缩放时，每帧只有一次Choreographer回调
+    API 16以上用Choreographer，以下用主线程Handler，间隔与ValueAnimator默认的一致
+    每个runnable带着所属的view，view没有attach到window时交给view自己的postOnAnimation，
+    与不共用时一样留到attach之后，不推进已经detach的view
+ */
+final class AnimationScheduler {
+    private static final long FALLBACK_FRAME_DELAY = 10;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static AnimationScheduler sInstance;
+
+    //下一帧要运行的，运行时与mRunning交换，mPendingViews与mPending一一对应
+    private Runnable[] mPending;
+    private View[] mPendingViews;
+    private int mPendingCount;
+    private Runnable[] mRunning;
+    private View[] mRunningViews;
+
+    private boolean mScheduled;
+    private Object mFrameCallback;
+    private Handler mHandler;
+    private final Runnable mFallbackRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    static AnimationScheduler getInstance(){
+        if(sInstance==null)
+            sInstance = new AnimationScheduler();
+        return sInstance;
+    }
+
+    private AnimationScheduler(){
+        mPending = new Runnable[INITIAL_CAPACITY];
+        mPendingViews = new View[INITIAL_CAPACITY];
+        mRunning = new Runnable[INITIAL_CAPACITY];
+        mRunningViews = new View[INITIAL_CAPACITY];
+        if(Build.VERSION.SDK_INT>=Build.VERSION_CODES.JELLY_BEAN)
+            mFrameCallback = new FrameCallbackImpl();
+        else
+            mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    //同一帧内重复post只运行一次
+    void post(View view,Runnable runnable){
+        if(!ViewCompat.isAttachedToWindow(view)){
+            ViewCompat.postOnAnimation(view,runnable);
+            return;
+        }
+
+        for(int i=0;i<mPendingCount;i++){
+            if(mPending[i]==runnable)
+                return;
+        }
+
+        if(mPendingCount==mPending.length){
+            Runnable[] grown = new Runnable[mPendingCount*2];
+            System.arraycopy(mPending,0,grown,0,mPendingCount);
+            mPending = grown;
+            View[] grownViews = new View[mPendingCount*2];
+            System.arraycopy(mPendingViews,0,grownViews,0,mPendingCount);
+            mPendingViews = grownViews;
+        }
+        mPending[mPendingCount] = runnable;
+        mPendingViews[mPendingCount] = view;
+        mPendingCount++;
+        scheduleFrame();
+    }
+
+    //还没有运行时移除，已经注册的frame callback照常运行；交给view的那部分由调用者removeCallbacks
+    void remove(Runnable runnable){
+        for(int i=0;i<mPendingCount;i++){
+            if(mPending[i]==runnable){
+                final int moved = mPendingCount-i-1;
+                System.arraycopy(mPending,i+1,mPending,i,moved);
+                System.arraycopy(mPendingViews,i+1,mPendingViews,i,moved);
+                mPendingCount--;
+                mPending[mPendingCount] = null;
+                mPendingViews[mPendingCount] = null;
+                return;
+            }
+        }
+    }
+
+    private void scheduleFrame(){
+        if(mScheduled)
+            return;
+        mScheduled = true;
+        if(mFrameCallback!=null)
+            postFrameCallback();
+        else
+            mHandler.postDelayed(mFallbackRunnable,FALLBACK_FRAME_DELAY);
+    }
+
+    boolean hasPending(){
+        return mPendingCount>0;
+    }
+
+    private void doFrame(){
+        mScheduled = false;
+        runPending();
+    }
+
+    /*
+        运行中post的runnable进入新的mPending，留到下一帧
+        测试中主线程一直被占用、frame callback不会运行，由测试直接调用，已经注册的callback不变
+     */
+    void runPending(){
+        final Runnable[] running = mPending;
+        final View[] runningViews = mPendingViews;
+        final int count = mPendingCount;
+        if(mRunning.length>=running.length){
+            mPending = mRunning;
+            mPendingViews = mRunningViews;
+        }else{
+            mPending = new Runnable[running.length];
+            mPendingViews = new View[running.length];
+        }
+        mPendingCount = 0;
+        mRunning = running;
+        mRunningViews = runningViews;
+
+        for(int i=0;i<count;i++){
+            final Runnable runnable = running[i];
+            final View view = runningViews[i];
+            running[i] = null;
+            runningViews[i] = null;
+            //post之后detach了，留到重新attach之后
+            if(ViewCompat.isAttachedToWindow(view))
+                runnable.run();
+            else
+                ViewCompat.postOnAnimation(view,runnable);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback(){
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameCallbackImpl implements Choreographer.FrameCallback{
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            AnimationScheduler.this.doFrame();
+        }
+    }
+}
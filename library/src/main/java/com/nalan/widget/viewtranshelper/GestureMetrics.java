@@ -0,0 +1,85 @@
+package com.nalan.widget.viewtranshelper;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/26.
+ */
+/*
+    一个手势的统计，从ACTION_DOWN开始，到手指离开并且fling、缩放动画都结束为止
+    所有的值都是primitive，ViewTransHelper复用同一个对象，回调之后会被reset，需要保存时用set复制一份
+ */
+public class GestureMetrics {
+    //处理的MotionEvent个数
+    public int events;
+    //ACTION_MOVE中的历史sample个数
+    public int historicalSamples;
+    //onDrag、onScale、onFling(包括getDirtyBounds)的次数与总耗时
+    public int callbackCount;
+    public long callbackNanos;
+    //ScrollRunnable运行的帧数，其中fling位移为0的帧数
+    public int flingFrames;
+    public int zeroDeltaFlingFrames;
+    //缩放动画的帧数
+    public int zoomFrames;
+    //fling、缩放动画中错过的vsync个数
+    public int missedFrames;
+    //手势的起止时间，SystemClock.uptimeMillis
+    public long startTime,endTime;
+
+    final long mFrameIntervalNanos;
+    boolean mActive;
+    private long mLastFrameNanos;
+
+    GestureMetrics(float refreshRate){
+        mFrameIntervalNanos = (long) (1000000000/(refreshRate>0 ? refreshRate : 60));
+    }
+
+    public void set(GestureMetrics src){
+        events = src.events;
+        historicalSamples = src.historicalSamples;
+        callbackCount = src.callbackCount;
+        callbackNanos = src.callbackNanos;
+        flingFrames = src.flingFrames;
+        zeroDeltaFlingFrames = src.zeroDeltaFlingFrames;
+        zoomFrames = src.zoomFrames;
+        missedFrames = src.missedFrames;
+        startTime = src.startTime;
+        endTime = src.endTime;
+    }
+
+    public void reset(){
+        events = 0;
+        historicalSamples = 0;
+        callbackCount = 0;
+        callbackNanos = 0;
+        flingFrames = 0;
+        zeroDeltaFlingFrames = 0;
+        zoomFrames = 0;
+        missedFrames = 0;
+        startTime = 0;
+        endTime = 0;
+        mActive = false;
+        mLastFrameNanos = 0;
+    }
+
+    void begin(long time){
+        reset();
+        mActive = true;
+        startTime = time;
+    }
+
+    //fling、缩放动画开始时调用，之后每帧调用onFrame
+    void beginFrames(){
+        mLastFrameNanos = 0;
+    }
+
+    //与上一帧的间隔超过1.5个vsync时，算作错过了中间的vsync
+    void onFrame(long frameNanos){
+        if(mLastFrameNanos!=0){
+            final long interval = frameNanos-mLastFrameNanos;
+            if(interval*2>mFrameIntervalNanos*3)
+                missedFrames += Math.max(1,(int) ((interval+mFrameIntervalNanos/2)/mFrameIntervalNanos)-1);
+        }
+        mLastFrameNanos = frameNanos;
+    }
+}
@@ -0,0 +1,86 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.nalan.widget.viewtranshelper.core.LatencyHistogram;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/27.
+ */
+/*
+    从MotionEvent.getEventTime()到绘制这次变换的那一帧的延迟，单位微秒
+    每次drag、scale记下还没有被绘制的最早的事件时间，下一帧的frame callback在draw之前运行，
+    它的时间就是绘制这次变换的帧的vsync时间
+    API 16以上用Choreographer的frameTimeNanos，以下用postOnAnimation运行时的System.nanoTime()
+    eventTime与frameTimeNanos都是CLOCK_MONOTONIC，可以直接相减
+ */
+class LatencyTracker {
+    private final View mView;
+    private final LatencyHistogram mHistogram;
+    private final FrameRunnable mFrameRunnable;
+    private Object mFrameCallback;
+
+    private long mPendingEventTime;
+    private boolean mScheduled;
+
+    LatencyTracker(View view){
+        mView = view;
+        mHistogram = new LatencyHistogram();
+        mFrameRunnable = new FrameRunnable();
+        if(Build.VERSION.SDK_INT>=Build.VERSION_CODES.JELLY_BEAN)
+            mFrameCallback = new FrameCallbackImpl();
+    }
+
+    LatencyHistogram getHistogram(){
+        return mHistogram;
+    }
+
+    //eventTime - 引起这次变换的MotionEvent.getEventTime()
+    void onTransform(long eventTime){
+        if(mScheduled)
+            return;
+
+        mPendingEventTime = eventTime;
+        mScheduled = true;
+        if(mFrameCallback!=null)
+            postFrameCallback();
+        else
+            ViewCompat.postOnAnimation(mView,mFrameRunnable);
+    }
+
+    void cancel(){
+        mScheduled = false;
+    }
+
+    private void onFrame(long frameTimeNanos){
+        if(!mScheduled)
+            return;
+        mScheduled = false;
+        mHistogram.record((frameTimeNanos-mPendingEventTime*1000000)/1000);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback(){
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    private class FrameRunnable implements Runnable{
+        @Override
+        public void run() {
+            onFrame(System.nanoTime());
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameCallbackImpl implements Choreographer.FrameCallback{
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+        }
+    }
+}
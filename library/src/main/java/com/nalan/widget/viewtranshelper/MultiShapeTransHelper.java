@@ -0,0 +1,587 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+
+import com.nalan.widget.viewtranshelper.core.InsetTransform;
+import com.nalan.widget.viewtranshelper.core.PointerDigest;
+import com.nalan.widget.viewtranshelper.core.ShapeGridIndex;
+import com.nalan.widget.viewtranshelper.core.TransRect;
+import com.nalan.widget.viewtranshelper.core.TransRectF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/17.
+ */
+/*
+    多个shape共用一个ViewTransHelper，每个shape的规则与InsetTransHelper一致，始终都在viewport内
+    ACTION_DOWN时通过ShapeGridIndex找到最上面的shape，之后的drag、scale、fling都交给它
+    shape每次变换后增量更新索引
+
+    开启concurrent gestures后不再经过ViewTransHelper：每个pointer在按下时各自找到自己的shape，
+    同一个shape上的pointer组成一组(PointerGroup)，各组同时drag、scale、fling，互不影响
+    每个MotionEvent只遍历一次pointer，所有组的变换在这一次里算完；所有组的fling共用一个动画循环
+ */
+public class MultiShapeTransHelper implements ViewTransHelper.DirtyBoundsCallback,ViewTransHelper.FlingRangeCallback {
+    private Rect mViewport;
+    private ShapeGridIndex mIndex;
+    //下标就是id，remove后为null
+    private ArrayList<Shape> mShapes;
+    private int mSelected;
+
+    private TransRect mTempShape;
+    private TransRectF mTempRange;
+    private float[] mTempValues;
+
+    private boolean mHandleTouch;
+    private ViewTransHelper mTransHelper;
+
+    //concurrent gestures
+    private static final int MAX_POINTER_ID = 32;
+    private View mRootView;
+    private ViewTransConfig mConfig;
+    private boolean mConcurrentEnabled;
+    private int mTouchSlop;
+    private float mSpanSlop;
+    private float mMinSpan;
+    private float mMinVelocity,mMaxVelocity;
+    private float mTouchSize;
+    private VelocityTracker mVelocityTracker;
+    //pointer id -> shape id
+    private int[] mPointerShape;
+    //有pointer的shape
+    private int[] mActiveShapes;
+    private int mActiveCount;
+    //每个MotionEvent中pointer的坐标，只从MotionEvent读一次
+    private float[] mPointerX,mPointerY;
+    private int[] mPointerShapeByIndex;
+    //正在fling的shape
+    private int[] mFlingShapes;
+    private int mFlingCount;
+    private int[] mFlingDelta;
+    private FlingRunnable mFlingRunnable;
+    //为null时fling直接postOnAnimation
+    private AnimationScheduler mAnimationScheduler;
+
+    public MultiShapeTransHelper(View root){
+        mRootView = root;
+        mConfig = ViewTransConfig.get(root.getContext());
+        mViewport = new Rect();
+        mShapes = new ArrayList<Shape>();
+        mSelected = -1;
+
+        mTempShape = new TransRect();
+        mTempRange = new TransRectF();
+        mTempValues = new float[9];
+
+        mTransHelper = new ViewTransHelper(root,this);
+    }
+
+    public void setOnTapListener(ViewTransHelper.OnTapListener listener){
+        mTransHelper.setOnTapListener(listener);
+    }
+
+    public void setOnLongPressListener(ViewTransHelper.OnLongPressListener listener){
+        mTransHelper.setOnLongPressListener(listener);
+    }
+
+    public void setDirtyRegionEnabled(boolean enabled,int margin){
+        mTransHelper.setDirtyRegionEnabled(enabled,margin);
+    }
+
+    //见ViewTransHelper.setSharedAnimationSchedulerEnabled，concurrent gestures的fling同样交给共用的scheduler
+    public void setSharedAnimationSchedulerEnabled(boolean enabled){
+        mTransHelper.setSharedAnimationSchedulerEnabled(enabled);
+        mAnimationScheduler = enabled ? AnimationScheduler.getInstance() : null;
+    }
+
+    /*
+        viewport - 视口，所有shape都在它的范围内
+        cellSize - 索引格子的大小，与shape的典型大小相当时查询最快
+        会清除已经加入的shape
+     */
+    public void setup(Rect viewport,int cellSize){
+        mViewport.set(viewport);
+        mTempShape.set(viewport.left,viewport.top,viewport.right,viewport.bottom);
+        mIndex = new ShapeGridIndex(mTempShape,cellSize);
+        mShapes.clear();
+        mSelected = -1;
+    }
+
+    /*
+        参数与InsetTransHelper.setup一致，返回shape的id
+        新加入的shape在最上面
+     */
+    public int addShape(int shapeWidth,int shapeHeight,int minWidth,int minHeight){
+        Shape shape = new Shape(mConfig);
+        mTempShape.set(mViewport.left,mViewport.top,mViewport.right,mViewport.bottom);
+        shape.transform.setup(mTempShape,shapeWidth,shapeHeight,minWidth,minHeight);
+
+        final int id = mShapes.size();
+        mShapes.add(shape);
+        syncShape(id);
+        return id;
+    }
+
+    public void removeShape(int id){
+        Shape shape = mShapes.get(id);
+        if(shape!=null && shape.group.pointerCount>0){
+            removeActive(id);
+            for(int i=0;i<MAX_POINTER_ID;i++){
+                if(mPointerShape[i]==id)
+                    mPointerShape[i] = -1;
+            }
+        }
+        mShapes.set(id,null);
+        mIndex.remove(id);
+        if(mSelected==id)
+            mSelected = -1;
+    }
+
+    /*
+        开启后多个pointer可以同时在不同的shape上drag、scale、fling，用于多人同时操作的场景
+        此时不支持tap、double tap，ACTION_DOWN总是被消费，这样落在空白处的第一个手指不会让后面的手指收不到事件
+     */
+    public void setConcurrentGesturesEnabled(boolean enabled){
+        if(enabled && mPointerShape==null){
+            mTouchSlop = mConfig.touchSlop;
+            mSpanSlop = mConfig.spanSlop;
+            mMinSpan = mConfig.minSpan;
+            mMinVelocity = mConfig.minVelocity;
+            mMaxVelocity = mConfig.maxVelocity;
+            mTouchSize = mConfig.touchMinMajor/2;
+
+            mPointerShape = new int[MAX_POINTER_ID];
+            Arrays.fill(mPointerShape,-1);
+            mActiveShapes = new int[MAX_POINTER_ID];
+            mPointerX = new float[MAX_POINTER_ID];
+            mPointerY = new float[MAX_POINTER_ID];
+            mPointerShapeByIndex = new int[MAX_POINTER_ID];
+            mFlingShapes = new int[MAX_POINTER_ID];
+            mFlingDelta = new int[2];
+            mFlingRunnable = new FlingRunnable();
+        }
+        mConcurrentEnabled = enabled;
+    }
+
+    public void bringToFront(int id){
+        mIndex.bringToFront(id);
+    }
+
+    //包括已经remove的id
+    public int getShapeCount(){
+        return mShapes.size();
+    }
+
+    //当前手势作用的shape，没有返回-1
+    public int getSelectedShape(){
+        return mSelected;
+    }
+
+    public Matrix getTransformMatrix(int id){
+        return mShapes.get(id).matrix;
+    }
+
+    public Rect getCurrentShape(int id){
+        return mShapes.get(id).currentShape;
+    }
+
+    public void setCurrentShape(int id,Rect dst){
+        mTempShape.set(dst.left,dst.top,dst.right,dst.bottom);
+        mShapes.get(id).transform.setCurrentShape(mTempShape);
+        dst.set(mTempShape.left,mTempShape.top,mTempShape.right,mTempShape.bottom);
+        syncShape(id);
+    }
+
+    public boolean onTouchEvent(MotionEvent ev){
+        if(mConcurrentEnabled)
+            return onConcurrentTouchEvent(ev);
+
+        boolean ret;
+        final int action = ev.getActionMasked();
+
+        switch (action){
+            case MotionEvent.ACTION_DOWN:
+                final int id = mIndex.findTopmost(ev.getX(),ev.getY());
+                if(id>=0){
+                    mSelected = id;
+                    mHandleTouch = mTransHelper.processTouchEvent(ev);
+                    return mHandleTouch;
+                }
+                break;
+
+            case MotionEvent.ACTION_POINTER_UP:
+            case MotionEvent.ACTION_POINTER_DOWN:
+                if(mHandleTouch)
+                    mTransHelper.processTouchEvent(ev);
+                break;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                ret = mHandleTouch;
+                if(mHandleTouch)
+                    mTransHelper.processTouchEvent(ev);
+                mHandleTouch = false;
+                return ret;
+
+            case MotionEvent.ACTION_MOVE:
+                ret = mHandleTouch;
+                if(mHandleTouch)
+                    mTransHelper.processTouchEvent(ev);
+                return ret;
+        }
+
+        return false;
+    }
+
+    private boolean onConcurrentTouchEvent(MotionEvent ev){
+        if(mVelocityTracker==null)
+            mVelocityTracker = VelocityTracker.obtain();
+        mVelocityTracker.addMovement(ev);
+
+        final int action = ev.getActionMasked();
+        switch (action){
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN:{
+                final int actionIndex = ev.getActionIndex();
+                final int shapeId = mIndex.findTopmost(ev.getX(actionIndex),ev.getY(actionIndex));
+                mPointerShape[ev.getPointerId(actionIndex)] = shapeId;
+                if(shapeId>=0){
+                    PointerGroup group = mShapes.get(shapeId).group;
+                    group.abortFling();
+                    if(group.pointerCount++==0)
+                        addActive(shapeId);
+                    collectGroups(ev,-1);
+                    group.resetBaseline();
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_MOVE:
+                collectGroups(ev,-1);
+                applyGroups();
+                break;
+
+            case MotionEvent.ACTION_POINTER_UP:
+            case MotionEvent.ACTION_UP:{
+                final int actionIndex = ev.getActionIndex();
+                final int pointerId = ev.getPointerId(actionIndex);
+                final int shapeId = mPointerShape[pointerId];
+                mPointerShape[pointerId] = -1;
+                if(shapeId>=0 && mShapes.get(shapeId)!=null){
+                    PointerGroup group = mShapes.get(shapeId).group;
+                    if(--group.pointerCount==0){
+                        removeActive(shapeId);
+                        if(group.dragging)
+                            startGroupFling(shapeId,pointerId);
+                        group.reset();
+                    }else{
+                        collectGroups(ev,actionIndex);
+                        group.resetBaseline();
+                    }
+                }
+
+                if(action==MotionEvent.ACTION_UP)
+                    mVelocityTracker.clear();
+                break;
+            }
+
+            case MotionEvent.ACTION_CANCEL:
+                for(int i=0;i<mActiveCount;i++)
+                    mShapes.get(mActiveShapes[i]).group.reset();
+                mActiveCount = 0;
+                Arrays.fill(mPointerShape,-1);
+                mVelocityTracker.clear();
+                break;
+        }
+
+        return true;
+    }
+
+    /*
+        遍历一次pointer，计算每组的focus、span
+        skipIndex - ACTION_POINTER_UP时离开的pointer，不参与计算
+     */
+    private void collectGroups(MotionEvent ev,int skipIndex){
+        for(int i=0;i<mActiveCount;i++)
+            mShapes.get(mActiveShapes[i]).group.beginPass();
+
+        final int count = Math.min(ev.getPointerCount(),MAX_POINTER_ID);
+        for(int i=0;i<count;i++){
+            final int shapeId = i==skipIndex ? -1 : mPointerShape[ev.getPointerId(i)];
+            mPointerShapeByIndex[i] = shapeId;
+            if(shapeId<0)
+                continue;
+
+            final float x = ev.getX(i);
+            final float y = ev.getY(i);
+            mPointerX[i] = x;
+            mPointerY[i] = y;
+            PointerGroup group = mShapes.get(shapeId).group;
+            group.sumX += x;
+            group.sumY += y;
+            group.samples++;
+        }
+
+        for(int i=0;i<mActiveCount;i++)
+            mShapes.get(mActiveShapes[i]).group.computeFocus();
+
+        //span需要先知道focus，这里只读缓存的坐标
+        for(int i=0;i<count;i++){
+            final int shapeId = mPointerShapeByIndex[i];
+            if(shapeId<0)
+                continue;
+
+            PointerGroup group = mShapes.get(shapeId).group;
+            group.devSumX += Math.abs(mPointerX[i]-group.focusX);
+            group.devSumY += Math.abs(mPointerY[i]-group.focusY);
+        }
+
+        for(int i=0;i<mActiveCount;i++)
+            mShapes.get(mActiveShapes[i]).group.computeSpan(mTouchSize);
+    }
+
+    //与ViewTransHelper一致：一个pointer时drag，多个时围绕focus scale
+    private void applyGroups(){
+        boolean changed = false;
+        for(int i=0;i<mActiveCount;i++){
+            final int shapeId = mActiveShapes[i];
+            Shape shape = mShapes.get(shapeId);
+            PointerGroup group = shape.group;
+
+            if(group.pointerCount>1){
+                if(!group.scaling){
+                    if(PointerDigest.exceedsSpanSlop(group.spanX,group.spanY,group.initialSpan,mMinSpan,mSpanSlop)){
+                        group.scaling = true;
+                        group.lastSpanX = group.spanX;
+                        group.lastSpanY = group.spanY;
+                    }
+                }else{
+                    //pointer在某个方向上几乎重合时span很小，这个方向不缩放，避免除以0或者很小的数
+                    final float sx = group.spanX>=mMinSpan && group.lastSpanX>=mMinSpan ? group.spanX/group.lastSpanX : 1;
+                    final float sy = group.spanY>=mMinSpan && group.lastSpanY>=mMinSpan ? group.spanY/group.lastSpanY : 1;
+                    shape.transform.postScale(sx,sy,group.focusX,group.focusY);
+                    group.lastSpanX = group.spanX;
+                    group.lastSpanY = group.spanY;
+                    syncShape(shapeId);
+                    changed = true;
+                }
+            }else{
+                if(!group.dragging){
+                    float dx = group.focusX-group.downFocusX;
+                    float dy = group.focusY-group.downFocusY;
+                    if(dx*dx+dy*dy>mTouchSlop*mTouchSlop)
+                        group.dragging = true;
+                }else{
+                    int dx = shape.transform.canDragHorizontal() ? (int) (group.focusX-group.lastFocusX) : 0;
+                    int dy = shape.transform.canDragVertical() ? (int) (group.focusY-group.lastFocusY) : 0;
+                    if(dx!=0 || dy!=0){
+                        shape.transform.postTranslate(dx,dy);
+                        //小数部分留给下一次
+                        group.lastFocusX += dx;
+                        group.lastFocusY += dy;
+                        syncShape(shapeId);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        if(changed)
+            ViewCompat.postInvalidateOnAnimation(mRootView);
+    }
+
+    private void startGroupFling(int shapeId,int pointerId){
+        mVelocityTracker.computeCurrentVelocity(1000,mMaxVelocity);
+        int xVel = (int) mVelocityTracker.getXVelocity(pointerId);
+        int yVel = (int) mVelocityTracker.getYVelocity(pointerId);
+        if(Math.abs(xVel)<=mMinVelocity && Math.abs(yVel)<=mMinVelocity)
+            return;
+
+        Shape shape = mShapes.get(shapeId);
+        shape.transform.getTranslateRange(mTempRange);
+        shape.group.startFling(xVel,yVel,
+                (int) Math.floor(mTempRange.left),(int) Math.ceil(mTempRange.right),
+                (int) Math.floor(mTempRange.top),(int) Math.ceil(mTempRange.bottom));
+
+        for(int i=0;i<mFlingCount;i++){
+            if(mFlingShapes[i]==shapeId){
+                mFlingRunnable.schedule();
+                return;
+            }
+        }
+        if(mFlingCount==mFlingShapes.length)
+            mFlingShapes = Arrays.copyOf(mFlingShapes,mFlingCount*2);
+        mFlingShapes[mFlingCount++] = shapeId;
+        mFlingRunnable.schedule();
+    }
+
+    private void addActive(int shapeId){
+        mActiveShapes[mActiveCount++] = shapeId;
+    }
+
+    private void removeActive(int shapeId){
+        for(int i=0;i<mActiveCount;i++){
+            if(mActiveShapes[i]==shapeId){
+                mActiveShapes[i] = mActiveShapes[--mActiveCount];
+                return;
+            }
+        }
+    }
+
+    //所有shape的fling在同一帧里推进
+    private class FlingRunnable implements Runnable{
+        private boolean mScheduled;
+
+        void schedule(){
+            if(mScheduled)
+                return;
+            mScheduled = true;
+            if(mAnimationScheduler!=null)
+                mAnimationScheduler.post(mRootView,this);
+            else
+                ViewCompat.postOnAnimation(mRootView,this);
+        }
+
+        @Override
+        public void run() {
+            mScheduled = false;
+            boolean changed = false;
+            int kept = 0;
+            for(int i=0;i<mFlingCount;i++){
+                final int shapeId = mFlingShapes[i];
+                Shape shape = mShapes.get(shapeId);
+                if(shape==null || !shape.group.computeFling(mFlingDelta))
+                    continue;
+
+                if(mFlingDelta[0]!=0 || mFlingDelta[1]!=0){
+                    boolean over = shape.transform.postTranslate(mFlingDelta[0],mFlingDelta[1]);
+                    syncShape(shapeId);
+                    changed = true;
+                    if(over){
+                        shape.group.abortFling();
+                        continue;
+                    }
+                }
+                if(shape.group.isFlinging())
+                    mFlingShapes[kept++] = shapeId;
+            }
+            mFlingCount = kept;
+
+            if(changed)
+                ViewCompat.postInvalidateOnAnimation(mRootView);
+            if(mFlingCount>0)
+                schedule();
+        }
+    }
+
+    private InsetTransform selected(){
+        return mSelected<0 ? null : mShapes.get(mSelected).transform;
+    }
+
+    //core中的结果同步到对外的Matrix、Rect，并更新索引
+    private void syncShape(int id){
+        Shape shape = mShapes.get(id);
+        shape.transform.getMatrix().getValues(mTempValues);
+        shape.matrix.setValues(mTempValues);
+
+        TransRect current = shape.transform.getCurrentShape();
+        shape.currentShape.set(current.left,current.top,current.right,current.bottom);
+
+        TransRectF bounds = shape.transform.getCurrentShapeF();
+        mIndex.put(id,bounds.left,bounds.top,bounds.right,bounds.bottom);
+    }
+
+    @Override
+    public boolean canDragHorizontal() {
+        InsetTransform transform = selected();
+        return transform!=null && transform.canDragHorizontal();
+    }
+
+    @Override
+    public boolean canDragVertical() {
+        InsetTransform transform = selected();
+        return transform!=null && transform.canDragVertical();
+    }
+
+    @Override
+    public boolean canScaleHorizontal() {
+        return mSelected>=0;
+    }
+
+    @Override
+    public boolean canScaleVertical() {
+        return mSelected>=0;
+    }
+
+    @Override
+    public float getScaleLevel() {
+        return 1.2f;
+    }
+
+    @Override
+    public void getDirtyBounds(Rect out) {
+        if(mSelected>=0)
+            out.set(mShapes.get(mSelected).currentShape);
+        else
+            out.setEmpty();
+    }
+
+    @Override
+    public void getFlingRange(Rect out) {
+        InsetTransform transform = selected();
+        if(transform==null){
+            out.setEmpty();
+            return;
+        }
+        transform.getTranslateRange(mTempRange);
+        out.set((int) Math.floor(mTempRange.left),(int) Math.floor(mTempRange.top),
+                (int) Math.ceil(mTempRange.right),(int) Math.ceil(mTempRange.bottom));
+    }
+
+    @Override
+    public void onScale(float sx, float sy, float px, float py) {
+        InsetTransform transform = selected();
+        if(transform!=null){
+            transform.postScale(sx,sy,px,py);
+            syncShape(mSelected);
+        }
+    }
+
+    @Override
+    public void onDrag(int dx, int dy) {
+        InsetTransform transform = selected();
+        if(transform!=null){
+            transform.postTranslate(dx,dy);
+            syncShape(mSelected);
+        }
+    }
+
+    @Override
+    public boolean onFling(int dx, int dy) {
+        InsetTransform transform = selected();
+        if(transform==null)
+            return true;
+        boolean over = transform.postTranslate(dx,dy);
+        syncShape(mSelected);
+        return over;
+    }
+
+    private static class Shape{
+        final InsetTransform transform = new InsetTransform();
+        final PointerGroup group;
+        final Matrix matrix = new Matrix();
+        final Rect currentShape = new Rect();
+
+        Shape(ViewTransConfig config){
+            group = new PointerGroup(config);
+        }
+    }
+}
@@ -2,9 +2,15 @@ package com.nalan.widget.viewtranshelper;
 
 import android.graphics.Matrix;
 import android.graphics.Rect;
-import android.graphics.RectF;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.animation.Interpolator;
+
+import com.nalan.widget.viewtranshelper.core.OutsetTransform;
+import com.nalan.widget.viewtranshelper.core.TransRect;
+import com.nalan.widget.viewtranshelper.core.TransRectF;
+import com.nalan.widget.viewtranshelper.core.TransformPublisher;
+import com.nalan.widget.viewtranshelper.core.ZoomLevelTracker;
 
 /**
  * Author： liyi
@@ -14,15 +20,25 @@ import android.view.View;
     outset指shape放大或者移动，不管怎么变换始终都将viewport包裹在内
     手指在viewport上时才能捕获相应的事件
  */
-public class OutsetTransHelper implements ViewTransHelper.Callback {
+public class OutsetTransHelper implements ViewTransHelper.FlingRangeCallback,ViewTransHelper.TransformCallback,ViewTransHelper.TransformStateCallback {
     private Rect mCurrentShape,mViewport;
-    private int mShapeWidth,mShapeHeight;
-    private int mShapeWidthMax,mShapeHeightMax;
+
+    //边界计算都在core里，这里只负责同步到android的Matrix、Rect
+    private OutsetTransform mTransform;
+    private TransRect mTempShape;
+    private TransRectF mTempRange;
 
     private Matrix mMatrix;
-    private float[] mTempDelta;
-    private RectF mTempRectF;
     private float[] mTempValues;
+    //给渲染线程的快照
+    private TransformPublisher mPublisher;
+
+    //预测的fling、缩放动画结束时的状态，为null时不计算
+    private SettlePredictor mSettlePredictor;
+
+    //缩放越过breakpoint时通知，为null时不计算
+    private ZoomLevelTracker mZoomLevelTracker;
+    private ViewTransHelper.OnZoomLevelChangeListener mZoomLevelListener;
 
     private boolean mHandleTouch;
     private ViewTransHelper mTransHelper;
@@ -32,9 +48,11 @@ public class OutsetTransHelper implements ViewTransHelper.Callback {
         mViewport = new Rect();
         mCurrentShape = new Rect();
 
-        mTempRectF = new RectF();
-        mTempDelta = new float[2];
+        mTransform = new OutsetTransform();
+        mTempShape = new TransRect();
+        mTempRange = new TransRectF();
         mTempValues = new float[9];
+        mPublisher = new TransformPublisher();
 
         mTransHelper = new ViewTransHelper(root,this);
     }
@@ -43,36 +61,107 @@ public class OutsetTransHelper implements ViewTransHelper.Callback {
         mTransHelper.setOnTapListener(listener);
     }
 
+    public void setOnLongPressListener(ViewTransHelper.OnLongPressListener listener){
+        mTransHelper.setOnLongPressListener(listener);
+    }
+
+    /*
+        fling、双击或zoomTo的缩放动画开始时，回调动画结束时的matrix、shape，可以提前加载那时可见的内容
+        可以添加多个listener，全部移除后不再计算
+     */
+    public void addOnPredictedSettleListener(ViewTransHelper.OnPredictedSettleListener listener){
+        if(mSettlePredictor==null)
+            mSettlePredictor = new SettlePredictor(mTransform);
+        mSettlePredictor.addListener(listener);
+        mTransHelper.setOnSettlePredictionListener(mSettlePredictor);
+    }
+
+    public void removeOnPredictedSettleListener(ViewTransHelper.OnPredictedSettleListener listener){
+        if(mSettlePredictor==null)
+            return;
+        mSettlePredictor.removeListener(listener);
+        if(!mSettlePredictor.hasListeners())
+            mTransHelper.setOnSettlePredictionListener(null);
+    }
+
+    /*
+        只在缩放越过breakpoints时回调，而不是每次onScale，用来切换开销大的分辨率
+        breakpoints - 从小到大的scale，scale是相对于setup时shape大小的倍数
+        hysteresis - breakpoint两侧的带宽比例，例如0.1表示要越过breakpoint的10%才切换
+        设置后立即回调一次当前的level，listener为null时取消
+     */
+    public void setOnZoomLevelChangeListener(float[] breakpoints,float hysteresis,ViewTransHelper.OnZoomLevelChangeListener listener){
+        mZoomLevelListener = listener;
+        if(listener==null){
+            mZoomLevelTracker = null;
+            return;
+        }
+
+        if(mZoomLevelTracker==null)
+            mZoomLevelTracker = new ZoomLevelTracker();
+        mZoomLevelTracker.setup(breakpoints,hysteresis);
+        dispatchZoomLevel();
+    }
+
+    private void dispatchZoomLevel(){
+        //还没有setup
+        if(mTransform.getShapeWidth()==0 || mTransform.getShapeHeight()==0)
+            return;
+        TransRectF shape = mTransform.getCurrentShapeF();
+        float scale = Math.max(shape.width()/mTransform.getShapeWidth(),shape.height()/mTransform.getShapeHeight());
+        if(mZoomLevelTracker.update(scale))
+            mZoomLevelListener.onZoomLevelChanged(mZoomLevelTracker.getLevel(),scale);
+    }
+
+    //手势开始、阶段变化、完全停止时回调，停止时可以开始高质量的绘制
+    public void setOnGestureLifecycleListener(ViewTransHelper.OnGestureLifecycleListener listener){
+        mTransHelper.setOnGestureLifecycleListener(listener);
+    }
+
+    public void setZoomAnimation(Interpolator interpolator,int duration){
+        mTransHelper.setZoomAnimation(interpolator,duration);
+    }
+
+    /*
+        动画缩放到scale，scale是相对于setup时shape大小的倍数，(px,py)为缩放中心
+     */
+    public void zoomTo(float scale,float px,float py){
+        TransRectF shape = mTransform.getCurrentShapeF();
+        mTransHelper.animateScale(scale*mTransform.getShapeWidth()/shape.width(),scale*mTransform.getShapeHeight()/shape.height(),px,py);
+    }
+
+    /*
+        动画缩放到刚好包裹viewport的最小，以viewport的中心为基准
+     */
+    public void zoomToFit(){
+        TransRectF shape = mTransform.getCurrentShapeF();
+        float scale = Math.max(mViewport.width()/shape.width(),mViewport.height()/shape.height());
+        mTransHelper.animateScale(scale,scale,mViewport.exactCenterX(),mViewport.exactCenterY());
+    }
+
     /*
         viewport - 视口，显示的区域
         shapeWidth、shapeHeight - 需要变换的区域的初始大小，初始时它的(left,top)与viewport的(left,top)一致
         minWidth、minHeight - 最小为多少，不允许为0是因为可以缩放
      */
     public void setup(Rect viewport,int shapeWidth,int shapeHeight,int maxWidth,int maxHeight){
-        if(maxWidth<viewport.width() || maxHeight<viewport.height()
-                || viewport.width()==0 || viewport.height()==0 || shapeWidth==0 || shapeHeight==0
-                || shapeWidth<viewport.width() || shapeHeight<viewport.height()
-                ||shapeWidth>maxWidth || shapeHeight>maxHeight)
-            throw new IllegalArgumentException("大小错误");
+        mTempShape.set(viewport.left,viewport.top,viewport.right,viewport.bottom);
+        mTransform.setup(mTempShape,shapeWidth,shapeHeight,maxWidth,maxHeight);
 
         mViewport.set(viewport);
-        mShapeWidth = shapeWidth;
-        mShapeHeight = shapeHeight;
-        mShapeWidthMax = maxWidth;
-        mShapeHeightMax = maxHeight;
-
-        mCurrentShape.set(mViewport.left,mViewport.top,mViewport.left+shapeWidth,mViewport.top+shapeHeight);
-        mMatrix.reset();
-        mMatrix.postTranslate(mViewport.left,mViewport.top);
+        if(mZoomLevelTracker!=null)
+            mZoomLevelTracker.reset();
+        syncTransform();
     }
 
     /*
         设置shape的大小，在setup以后调用它
      */
     public void setCurrentShape(Rect dst){
-        adjustShape(mViewport,dst,mShapeWidthMax,mShapeHeightMax);
-        matrix(mMatrix,mViewport,dst,mShapeWidth,mShapeHeight);
-        mCurrentShape.set(dst);
+        mTempShape.set(dst.left,dst.top,dst.right,dst.bottom);
+        mTransform.setCurrentShape(mTempShape);
+        dst.set(mTempShape.left,mTempShape.top,mTempShape.right,mTempShape.bottom);
+        syncTransform();
     }
 
     public boolean onTouchEvent(MotionEvent ev){
@@ -113,126 +202,33 @@ public class OutsetTransHelper implements ViewTransHelper.Callback {
         return false;
     }
 
+    //只能在UI线程使用，其他线程用getTransformPublisher
+    @Override
     public Matrix getTransformMatrix(){
         return mMatrix;
     }
 
-    public Rect getCurrentShape(){
-        return mCurrentShape;
-    }
-
-    private boolean adjustTranslate(Rect viewport, Rect src, float[] delta,int widthMax,int heightMax){
-        boolean overX = false;
-        boolean overY = false;
-
-        if(src.left+delta[0]<viewport.right-widthMax) {
-            delta[0] = viewport.right-widthMax - src.left;
-            overX = true;
-        }
-
-        if(src.left+delta[0]>viewport.left){
-            delta[0] = viewport.left-src.left;
-            overX = true;
-        }
-
-        if(src.top+delta[1]<viewport.bottom-heightMax) {
-            delta[1] = viewport.bottom-heightMax - src.top;
-            overY = true;
-        }
-
-        if(src.top+delta[1]>viewport.top){
-            delta[1] = viewport.top-src.top;
-            overY = true;
-        }
-
-        if(src.right+delta[0]>viewport.left+widthMax) {
-            delta[0] = viewport.left+widthMax - src.right;
-            overX = true;
-        }
-
-        if(src.right+delta[0]<viewport.right){
-            delta[0] = viewport.right-src.right;
-            overX = true;
-        }
-
-        if(src.bottom+delta[1]>viewport.top+heightMax) {
-            delta[1] = viewport.top+heightMax - src.bottom;
-            overY = true;
-        }
-
-        if(src.bottom+delta[1]<viewport.bottom){
-            delta[1] = viewport.bottom-src.bottom;
-            overY = true;
-        }
-
-        return overX && overY;
-    }
-
-    private void adjustScale(Rect viewport,Rect src,int maxWidth,int maxHeight,float[] delta){
-        int dstWidth = (int) (src.width()*delta[0]);
-        int dstHeight = (int) (src.height()*delta[1]);
-
-        dstWidth = Math.max(viewport.width(),dstWidth);
-        dstWidth = Math.min(dstWidth,maxWidth);
-
-        dstHeight = Math.max(viewport.height(),dstHeight);
-        dstHeight = Math.min(dstHeight,maxHeight);
-
-        delta[0] = dstWidth*1f/src.width();
-        delta[1] = dstHeight*1f/src.height();
-    }
-
-    private void adjustShape(Rect viewport, Rect dst, int maxWidth, int maxHeight){
-        int minLeft = viewport.right-maxWidth;
-        int minTop = viewport.bottom-maxHeight;
-        int maxLeft = viewport.left;
-        int maxTop = viewport.top;
-
-        dst.left = Math.max(minLeft,dst.left);
-        dst.left = Math.min(dst.left,maxLeft);
-        dst.top = Math.max(minTop,dst.top);
-        dst.top = Math.min(dst.top,maxTop);
-
-        dst.right = Math.max(viewport.right,dst.right);
-        dst.right = Math.min(dst.right,viewport.left+maxWidth);
-        dst.bottom = Math.max(viewport.bottom,dst.bottom);
-        dst.bottom = Math.min(dst.bottom,viewport.top+maxHeight);
-
-        if(dst.width()>maxWidth)
-            dst.right = dst.left+maxWidth;
-        if(dst.height()>maxHeight)
-            dst.bottom = dst.top+maxHeight;
-    }
-
-    //根据dst计算出matrix
-    private void matrix(Matrix matrix,Rect viewport,Rect dst,int width,int height){
-        float sx = dst.width()*1f/width;
-        float sy = dst.height()*1f/height;
-
-        float dx = dst.left-viewport.left;
-        float dy = dst.top-viewport.top;
-
-        matrix.reset();
-        matrix.getValues(mTempValues);
-        mTempValues[Matrix.MSCALE_X] = sx;
-        mTempValues[Matrix.MSCALE_Y] = sy;
-        mTempValues[Matrix.MTRANS_X] = dx;
-        mTempValues[Matrix.MTRANS_Y] = dy;
-        matrix.setValues(mTempValues);
+    /*
+        渲染线程(SurfaceView、TextureView)通过read得到一致的matrix、shape，不需要加锁
+        每次变换后UI线程自动发布
+     */
+    public TransformPublisher getTransformPublisher(){
+        return mPublisher;
     }
 
-    private boolean inRect(Rect src,Rect dst){
-        return src.left>=dst.left &&src.top>=dst.top && src.right<=dst.right && src.bottom<=dst.bottom;
+    @Override
+    public Rect getCurrentShape(){
+        return mCurrentShape;
     }
 
     @Override
     public boolean canDragHorizontal() {
-        return mShapeWidthMax>mViewport.width();
+        return mTransform.canDragHorizontal();
     }
 
     @Override
     public boolean canDragVertical() {
-        return mShapeHeightMax>mViewport.height();
+        return mTransform.canDragVertical();
     }
 
     @Override
@@ -250,6 +246,19 @@ public class OutsetTransHelper implements ViewTransHelper.Callback {
         return 1.2f;
     }
 
+    @Override
+    public void getFlingRange(Rect out) {
+        mTransform.getTranslateRange(mTempRange);
+        out.set((int) Math.floor(mTempRange.left),(int) Math.floor(mTempRange.top),
+                (int) Math.ceil(mTempRange.right),(int) Math.ceil(mTempRange.bottom));
+    }
+
+    @Override
+    public void onTransform(float sx, float sy, float px, float py, float dx, float dy) {
+        mTransform.postTransform(sx,sy,px,py,dx,dy);
+        syncTransform();
+    }
+
     @Override
     public void onScale(float sx, float sy, float px, float py) {
         postScale(sx,sy,px,py);
@@ -266,35 +275,27 @@ public class OutsetTransHelper implements ViewTransHelper.Callback {
     }
 
     private boolean postTranslate(int dx,int dy){
-        mTempDelta[0] = dx;
-        mTempDelta[1] = dy;
-        boolean over = adjustTranslate(mViewport,mCurrentShape,mTempDelta,mShapeWidthMax,mShapeHeightMax);
-        dx = (int) mTempDelta[0];
-        dy = (int) mTempDelta[1];
-
-        mMatrix.postTranslate(dx,dy);
-        mCurrentShape.offset(dx,dy);
+        boolean over = mTransform.postTranslate(dx,dy);
+        syncTransform();
         return over;
     }
 
     private void postScale(float sx,float sy,float px,float py){
-        mTempDelta[0] = sx;
-        mTempDelta[1] = sy;
-        adjustScale(mViewport,mCurrentShape,mShapeWidthMax,mShapeHeightMax,mTempDelta);
-        sx = mTempDelta[0];
-        sy = mTempDelta[1];
-
-        mMatrix.postScale(sx,sy,px,py);
-        mTempRectF.set(mViewport.left,mViewport.top,mShapeWidth,mShapeHeight);
-        mMatrix.mapRect(mTempRectF);
-
-        mCurrentShape.set((int)mTempRectF.left,(int)mTempRectF.top,(int)mTempRectF.right,(int)mTempRectF.bottom);
-        adjustShape(mViewport,mCurrentShape,mShapeWidthMax,mShapeHeightMax);
-
-        mMatrix.getValues(mTempValues);
-        mTempValues[Matrix.MTRANS_X] = mCurrentShape.left-mViewport.left;
-        mTempValues[Matrix.MTRANS_Y] = mCurrentShape.top-mViewport.top;
+        mTransform.postScale(sx,sy,px,py);
+        syncTransform();
+    }
+
+    //core中的结果同步到对外的Matrix、Rect
+    private void syncTransform(){
+        mTransform.getMatrix().getValues(mTempValues);
         mMatrix.setValues(mTempValues);
+        mPublisher.publish(mTransform.getMatrix(),mTransform.getCurrentShapeF());
+
+        TransRect shape = mTransform.getCurrentShape();
+        mCurrentShape.set(shape.left,shape.top,shape.right,shape.bottom);
+
+        if(mZoomLevelTracker!=null)
+            dispatchZoomLevel();
     }
 
 }
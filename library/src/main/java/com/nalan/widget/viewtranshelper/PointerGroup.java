@@ -0,0 +1,114 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.view.animation.AnimationUtils;
+
+import com.nalan.widget.viewtranshelper.core.FlingScroller;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/24.
+ */
+/*
+    MultiShapeTransHelper并发手势时，落在同一个shape上的pointer组成一组
+    一组pointer只有1个时drag，多于1个时scale，所有pointer离开后可以fling
+    sum、dev是每个MotionEvent中累加的临时值
+    fling与ViewTransHelper一样使用FlingScroller和共用的ViewTransConfig，碰到边界的轴停止，另一个轴继续
+ */
+class PointerGroup {
+    int pointerCount;
+
+    boolean dragging;
+    boolean scaling;
+
+    float downFocusX,downFocusY;
+    float lastFocusX,lastFocusY;
+    float initialSpan;
+    float lastSpanX,lastSpanY;
+
+    float sumX,sumY;
+    float devSumX,devSumY;
+    int samples;
+
+    float focusX,focusY;
+    float spanX,spanY;
+
+    private final FlingScroller mScroller;
+    private int mLastFlingX,mLastFlingY;
+
+    PointerGroup(ViewTransConfig config){
+        mScroller = new FlingScroller(config.ppi,config.scrollFriction);
+    }
+
+    void beginPass(){
+        sumX = 0;
+        sumY = 0;
+        devSumX = 0;
+        devSumY = 0;
+        samples = 0;
+    }
+
+    //sum累加完以后调用
+    void computeFocus(){
+        focusX = sumX/samples;
+        focusY = sumY/samples;
+    }
+
+    //dev累加完以后调用
+    void computeSpan(float touchSize){
+        spanX = (devSumX/samples+touchSize)*2;
+        spanY = (devSumY/samples+touchSize)*2;
+    }
+
+    /*
+        pointer变化后，以当前的focus、span为起点
+        与ViewTransHelper一致，drag需要重新超过touch slop，pointer离开时focus的跳变不会被当作drag
+     */
+    void resetBaseline(){
+        lastFocusX = focusX;
+        lastFocusY = focusY;
+        downFocusX = focusX;
+        downFocusY = focusY;
+        lastSpanX = spanX;
+        lastSpanY = spanY;
+        initialSpan = (float) Math.sqrt(spanX*spanX+spanY*spanY);
+        scaling = false;
+        dragging = false;
+    }
+
+    void reset(){
+        pointerCount = 0;
+        dragging = false;
+        scaling = false;
+    }
+
+    void startFling(int xVel,int yVel,int minX,int maxX,int minY,int maxY){
+        mLastFlingX = 0;
+        mLastFlingY = 0;
+        mScroller.fling(0,0,xVel,yVel,minX,maxX,minY,maxY,AnimationUtils.currentAnimationTimeMillis());
+    }
+
+    void abortFling(){
+        if(!mScroller.isFinished())
+            mScroller.abortAnimation();
+    }
+
+    boolean isFlinging(){
+        return !mScroller.isFinished();
+    }
+
+    /*
+        计算这一帧fling的位移，写入delta，返回false表示fling已经结束
+     */
+    boolean computeFling(int[] delta){
+        if(!mScroller.computeScrollOffset(AnimationUtils.currentAnimationTimeMillis()))
+            return false;
+
+        final int curX = mScroller.getCurrX();
+        final int curY = mScroller.getCurrY();
+        delta[0] = curX-mLastFlingX;
+        delta[1] = curY-mLastFlingY;
+        mLastFlingX = curX;
+        mLastFlingY = curY;
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.graphics.Matrix;
+import android.graphics.Rect;
+
+import com.nalan.widget.viewtranshelper.core.ShapeTransform;
+import com.nalan.widget.viewtranshelper.core.TransMatrix;
+import com.nalan.widget.viewtranshelper.core.TransRectF;
+
+import java.util.ArrayList;
+
+/**
+ * Author： liyi
+ * Date：    2017/7/5.
+ */
+/*
+    InsetTransHelper、OutsetTransHelper共用：ViewTransHelper预测的变换先经过ShapeTransform修正，
+    再转换为android的Matrix、Rect交给OnPredictedSettleListener
+    helper只在有listener时才创建它并设置给ViewTransHelper，OnSettlePredictionListener不出现在helper的public API中
+    可以有多个listener(例如TiledImageView自己的预取和使用者的listener)，收到的是同一个matrix、shape，不能修改
+ */
+class SettlePredictor implements ViewTransHelper.OnSettlePredictionListener {
+    private final ShapeTransform mTransform;
+    private final TransRectF mShapeF;
+    private final TransMatrix mTransMatrix;
+    private final float[] mValues;
+    private final Matrix mMatrix;
+    private final Rect mShape;
+
+    private final ArrayList<ViewTransHelper.OnPredictedSettleListener> mListeners;
+
+    SettlePredictor(ShapeTransform transform){
+        mTransform = transform;
+        mShapeF = new TransRectF();
+        mTransMatrix = new TransMatrix();
+        mValues = new float[9];
+        mMatrix = new Matrix();
+        mShape = new Rect();
+        mListeners = new ArrayList<ViewTransHelper.OnPredictedSettleListener>(2);
+    }
+
+    void addListener(ViewTransHelper.OnPredictedSettleListener listener){
+        if(!mListeners.contains(listener))
+            mListeners.add(listener);
+    }
+
+    void removeListener(ViewTransHelper.OnPredictedSettleListener listener){
+        mListeners.remove(listener);
+    }
+
+    boolean hasListeners(){
+        return !mListeners.isEmpty();
+    }
+
+    @Override
+    public void onFlingPredicted(int dx, int dy) {
+        dispatch(1,1,0,0,dx,dy);
+    }
+
+    @Override
+    public void onZoomPredicted(float sx, float sy, float px, float py) {
+        dispatch(sx,sy,px,py,0,0);
+    }
+
+    private void dispatch(float sx,float sy,float px,float py,float dx,float dy){
+        final int count = mListeners.size();
+        if(count==0)
+            return;
+
+        mTransform.predictTransform(sx,sy,px,py,dx,dy,mShapeF);
+        mTransform.getShapeMatrix(mShapeF,mTransMatrix);
+        mTransMatrix.getValues(mValues);
+        mMatrix.setValues(mValues);
+        mShape.set(Math.round(mShapeF.left),Math.round(mShapeF.top),
+                Math.round(mShapeF.right),Math.round(mShapeF.bottom));
+        for(int i=0;i<count;i++)
+            mListeners.get(i).onPredictedSettle(mMatrix,mShape);
+    }
+}
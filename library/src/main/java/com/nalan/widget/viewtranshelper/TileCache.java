@@ -0,0 +1,347 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+
+/**
+ * Author： liyi
+ * Date：    2017/7/2.
+ */
+/*
+    TiledImageView的tile缓存，key是(inSampleSize,col,row)
+    - 按bitmap实际占用的字节数限制大小，tile、复用池、正在解码的inBitmap都计入，超出时先丢弃复用池，再从最久没有使用的tile开始淘汰
+    - 当前帧可见的tile、当前帧和上一帧画过的tile(包括垫在下面的其他level)受保护，不会被淘汰，即使因此超出限制
+      上一帧的display list可能还在使用它的bitmap，放入复用池后会被新的解码覆盖
+    - API 16以上解码新的tile时通过inBitmap复用：先从复用池中取，达到限制时直接取最久没有使用的tile的bitmap，
+      长时间pan时不再分配新的bitmap，也不会因为新的tile超出限制
+    tile数量由字节限制决定，通常只有几十个，查找直接遍历LRU链表，不需要装箱的key
+    除了isWanted，只能在主线程使用
+ */
+class TileCache {
+    //复用池最多保留的bitmap个数
+    private static final int MAX_POOL_SIZE = 8;
+    static final boolean REUSE_SUPPORTED = Build.VERSION.SDK_INT>=Build.VERSION_CODES.JELLY_BEAN;
+
+    private int mMaxBytes;
+    //tile和复用池中的bitmap
+    private int mBytes;
+    //obtainReusable交给解码的bitmap，releaseReusable之前一直计入，clear不影响
+    private int mReservedBytes;
+
+    //head是最近使用的
+    private Tile mHead,mTail;
+    private int mCount;
+    //后台线程会读取，见isWanted
+    private volatile int mFrame;
+
+    private final Bitmap[] mPool = new Bitmap[MAX_POOL_SIZE];
+    private int mPoolSize;
+
+    TileCache(int maxBytes){
+        mMaxBytes = maxBytes;
+    }
+
+    void setMaxBytes(int maxBytes){
+        mMaxBytes = maxBytes;
+        trimToSize();
+    }
+
+    int getBytes(){
+        return mBytes+mReservedBytes;
+    }
+
+    int getCount(){
+        return mCount;
+    }
+
+    //每帧开始时调用，之后get、put的tile算作这一帧可见
+    void beginFrame(){
+        mFrame++;
+    }
+
+    //找到后移到最前面并标记为可见
+    Tile get(int sampleSize,int col,int row){
+        for(Tile tile=mHead;tile!=null;tile=tile.next){
+            if(tile.sampleSize==sampleSize && tile.col==col && tile.row==row){
+                markVisible(tile);
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    //只查找，不改变LRU顺序和可见状态
+    Tile find(int sampleSize,int col,int row){
+        for(Tile tile=mHead;tile!=null;tile=tile.next){
+            if(tile.sampleSize==sampleSize && tile.col==col && tile.row==row)
+                return tile;
+        }
+        return null;
+    }
+
+    //新的tile，此时还没有bitmap
+    Tile put(int sampleSize,int col,int row){
+        Tile tile = new Tile(sampleSize,col,row);
+        linkFirst(tile);
+        mCount++;
+        markVisible(tile);
+        return tile;
+    }
+
+    //预取的tile，不算作这一帧可见，解码完成前不会因为不可见被跳过
+    Tile putPrefetch(int sampleSize,int col,int row){
+        Tile tile = new Tile(sampleSize,col,row);
+        linkFirst(tile);
+        mCount++;
+        tile.prefetch = true;
+        return tile;
+    }
+
+    //解码完成，tile已经被移除时返回false，bitmap由调用者处理
+    boolean setBitmap(Tile tile,Bitmap bitmap){
+        if(!contains(tile))
+            return false;
+
+        tile.bitmap = bitmap;
+        tile.bytes = bytesOf(bitmap);
+        mBytes += tile.bytes;
+        trimToSize();
+        return true;
+    }
+
+    void remove(Tile tile){
+        if(!contains(tile))
+            return;
+        unlink(tile);
+        mCount--;
+        releaseBitmap(tile);
+    }
+
+    boolean isVisible(Tile tile){
+        return tile.visibleFrame==mFrame;
+    }
+
+    //onDraw中画出的tile调用
+    void markDrawn(Tile tile){
+        tile.drawnFrame = mFrame;
+    }
+
+    /*
+        后台线程调用，排队中的解码是否还需要
+        beginFrame之后、get重新标记之前，上一帧可见的tile还没有标记，所以上一帧可见的也算
+     */
+    boolean isWanted(Tile tile){
+        return tile.prefetch || tile.visibleFrame>=mFrame-1;
+    }
+
+    //从最近使用的开始遍历
+    Tile first(){
+        return mHead;
+    }
+
+    /*
+        取出一个width*height的bitmap用于inBitmap，没有返回null
+        复用池中没有、并且再分配一个就会超出限制时，淘汰最久没有使用的同样大小的tile，直接复用它的bitmap
+        返回的bitmap在releaseReusable之前仍然计入字节数
+        API 19以前inBitmap要求大小完全一致，这里统一按完全一致匹配
+     */
+    Bitmap obtainReusable(int width,int height){
+        for(int i=mPoolSize-1;i>=0;i--){
+            Bitmap bitmap = mPool[i];
+            if(bitmap.getWidth()==width && bitmap.getHeight()==height){
+                mPool[i] = mPool[--mPoolSize];
+                mPool[mPoolSize] = null;
+                reserve(bitmap);
+                return bitmap;
+            }
+        }
+
+        //解码的tile都是ARGB_8888
+        if(getBytes()+width*height*4<=mMaxBytes)
+            return null;
+        for(Tile tile=mTail;tile!=null;tile=tile.prev){
+            final Bitmap bitmap = tile.bitmap;
+            if(isEvictable(tile) && bitmap.isMutable() && bitmap.getWidth()==width && bitmap.getHeight()==height){
+                unlink(tile);
+                mCount--;
+                tile.bitmap = null;
+                releaseBitmap(tile);
+                reserve(bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    //解码完成后调用，不管是否用上了
+    void releaseReusable(Bitmap bitmap){
+        mReservedBytes -= bytesOf(bitmap);
+    }
+
+    //不再需要的bitmap放回复用池，池满或者超出限制时丢弃最早的
+    void recycleBitmap(Bitmap bitmap){
+        if(!REUSE_SUPPORTED || !bitmap.isMutable()){
+            bitmap.recycle();
+            return;
+        }
+
+        if(mPoolSize==MAX_POOL_SIZE)
+            recycleOldestPooled();
+        mPool[mPoolSize++] = bitmap;
+        mBytes += bytesOf(bitmap);
+        trimToSize();
+    }
+
+    /*
+        释放所有tile和复用池
+        最近两帧画过的tile可能还被上一帧的display list使用，不recycle，只丢弃引用交给GC
+     */
+    void clear(){
+        Tile tile = mHead;
+        while (tile!=null){
+            final Tile next = tile.next;
+            tile.visibleFrame = Tile.NO_FRAME;
+            tile.prefetch = false;
+            if(tile.bitmap!=null){
+                if(tile.drawnFrame<mFrame-1)
+                    tile.bitmap.recycle();
+                tile.bitmap = null;
+            }
+            tile.prev = null;
+            tile.next = null;
+            tile = next;
+        }
+        mHead = null;
+        mTail = null;
+        mCount = 0;
+        mBytes = 0;
+
+        for(int i=0;i<mPoolSize;i++){
+            mPool[i].recycle();
+            mPool[i] = null;
+        }
+        mPoolSize = 0;
+    }
+
+    /*
+        先丢弃复用池，再从最久没有使用的开始淘汰可以淘汰的tile
+        此时已经超出限制，淘汰的bitmap直接recycle，不放入复用池
+     */
+    private void trimToSize(){
+        while (getBytes()>mMaxBytes && mPoolSize>0)
+            recycleOldestPooled();
+
+        Tile tile = mTail;
+        while (getBytes()>mMaxBytes && tile!=null){
+            final Tile prev = tile.prev;
+            if(isEvictable(tile)){
+                unlink(tile);
+                mCount--;
+                mBytes -= tile.bytes;
+                tile.bitmap.recycle();
+                tile.bitmap = null;
+                releaseBitmap(tile);
+            }
+            tile = prev;
+        }
+    }
+
+    //已经解码完成、不可见、最近两帧没有画过
+    private boolean isEvictable(Tile tile){
+        return tile.bitmap!=null && !isVisible(tile) && tile.drawnFrame<mFrame-1;
+    }
+
+    private void recycleOldestPooled(){
+        final Bitmap bitmap = mPool[0];
+        mBytes -= bytesOf(bitmap);
+        bitmap.recycle();
+        System.arraycopy(mPool,1,mPool,0,mPoolSize-1);
+        mPool[--mPoolSize] = null;
+    }
+
+    private void reserve(Bitmap bitmap){
+        final int bytes = bytesOf(bitmap);
+        mBytes -= bytes;
+        mReservedBytes += bytes;
+    }
+
+    private static int bytesOf(Bitmap bitmap){
+        return bitmap.getRowBytes()*bitmap.getHeight();
+    }
+
+    //清除tile的状态，还有bitmap时放回复用池
+    private void releaseBitmap(Tile tile){
+        tile.visibleFrame = Tile.NO_FRAME;
+        tile.prefetch = false;
+        final Bitmap bitmap = tile.bitmap;
+        tile.bitmap = null;
+        tile.bytes = 0;
+        if(bitmap!=null){
+            mBytes -= bytesOf(bitmap);
+            recycleBitmap(bitmap);
+        }
+    }
+
+    private void markVisible(Tile tile){
+        tile.visibleFrame = mFrame;
+        if(tile!=mHead){
+            unlink(tile);
+            linkFirst(tile);
+        }
+    }
+
+    private boolean contains(Tile tile){
+        return tile.prev!=null || mHead==tile;
+    }
+
+    private void linkFirst(Tile tile){
+        tile.prev = null;
+        tile.next = mHead;
+        if(mHead!=null)
+            mHead.prev = tile;
+        mHead = tile;
+        if(mTail==null)
+            mTail = tile;
+    }
+
+    private void unlink(Tile tile){
+        if(tile.prev!=null)
+            tile.prev.next = tile.next;
+        else
+            mHead = tile.next;
+        if(tile.next!=null)
+            tile.next.prev = tile.prev;
+        else
+            mTail = tile.prev;
+        tile.prev = null;
+        tile.next = null;
+    }
+
+    static class Tile{
+        static final int NO_FRAME = Integer.MIN_VALUE;
+
+        final int sampleSize;
+        final int col,row;
+        //在原图上的范围
+        final Rect imageRect = new Rect();
+        Bitmap bitmap;
+        int bytes;
+        boolean loading;
+        //fling、缩放动画的终点会用到，排队中也要解码
+        volatile boolean prefetch;
+        //最近一次可见的帧，后台线程会读取，已经不可见时排队中的解码会被跳过
+        volatile int visibleFrame;
+        //最近一次画出的帧
+        int drawnFrame;
+        Tile prev,next;
+
+        Tile(int sampleSize,int col,int row){
+            this.sampleSize = sampleSize;
+            this.col = col;
+            this.row = row;
+            visibleFrame = NO_FRAME;
+            drawnFrame = NO_FRAME;
+        }
+    }
+}
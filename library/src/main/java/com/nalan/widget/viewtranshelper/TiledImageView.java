@@ -0,0 +1,459 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.nalan.widget.viewtranshelper.TileCache.Tile;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Author： liyi
+ * Date：    2017/7/1.
+ */
+/*
+    超大图片的查看，由OutsetTransHelper负责pan、zoom，图片始终包裹整个view
+    图片不会整张加载：先解码一张不超过view大小的预览图垫底，再根据当前的缩放选择inSampleSize，
+    只在后台解码可见区域的tile，tile在图片上的大小是TILE_SIZE*inSampleSize，解码后的bitmap约为TILE_SIZE
+    解码过的tile保存在TileCache中，来回pan不再重复解码；缩放时先画其他level已有的tile，再画当前level的
+    绘制时先concat helper的matrix，再把shape的坐标缩放到图片的像素坐标，tile直接按图片坐标绘制
+    BitmapRegionDecoder需要API 10，API 9上setImage不做任何事
+ */
+public class TiledImageView extends View {
+    private static final int TILE_SIZE = 512;
+    private static Executor sDefaultExecutor;
+
+    private OutsetTransHelper mTransHelper;
+    private Executor mExecutor;
+    private Handler mMainHandler;
+    private Paint mPaint;
+    private float mMaxScale;
+
+    //每次setImage加1，旧的解码结果直接丢弃
+    private int mGeneration;
+    private BitmapRegionDecoder mDecoder;
+    private int mImageWidth,mImageHeight;
+    private Rect mImageBounds;
+    private Bitmap mPreview;
+    //setup时shape的大小，matrix把(0,0,mShapeWidth,mShapeHeight)映射到当前的shape
+    private int mShapeWidth,mShapeHeight;
+    private Rect mViewport;
+
+    private TileCache mCache;
+    private Rect mVisibleRect;
+    private int mMinSampleSize,mMaxSampleSize;
+    private Rect mPrefetchRect;
+
+    public TiledImageView(Context context) {
+        this(context,null);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs) {
+        this(context, attrs,0);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mTransHelper = new OutsetTransHelper(this);
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mMaxScale = 2;
+        mImageBounds = new Rect();
+        mViewport = new Rect();
+        //默认使用最大内存的1/8
+        mCache = new TileCache((int) Math.min(Runtime.getRuntime().maxMemory()/8,Integer.MAX_VALUE));
+        mVisibleRect = new Rect();
+        mMinSampleSize = Integer.MAX_VALUE;
+        mPrefetchRect = new Rect();
+        //fling、缩放动画开始时就解码终点可见的tile，使用者通过getTransHelper添加的listener不受影响
+        mTransHelper.addOnPredictedSettleListener(new ViewTransHelper.OnPredictedSettleListener() {
+            @Override
+            public void onPredictedSettle(Matrix matrix, Rect shape) {
+                prefetchTiles(shape);
+            }
+        });
+    }
+
+    //用来开启ViewTransHelper的各种功能、设置listener
+    public OutsetTransHelper getTransHelper(){
+        return mTransHelper;
+    }
+
+    //解码用的executor，默认是所有TiledImageView共用的单线程executor
+    public void setExecutor(Executor executor){
+        mExecutor = executor;
+    }
+
+    //tile缓存的字节数，可见的tile不受限制
+    public void setCacheSize(int bytes){
+        mCache.setMaxBytes(bytes);
+    }
+
+    //最大放大到图片1个像素占屏幕多少个像素，在setImage之前设置
+    public void setMaxScale(float maxScale){
+        mMaxScale = maxScale;
+    }
+
+    /*
+        在后台打开path并解码预览图，完成后显示
+        path为null时释放当前的图片
+     */
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    public void setImage(final String path){
+        releaseImage();
+        if(path==null || Build.VERSION.SDK_INT<Build.VERSION_CODES.GINGERBREAD_MR1)
+            return;
+
+        final int generation = mGeneration;
+        final int viewWidth = getWidth();
+        final int viewHeight = getHeight();
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                BitmapRegionDecoder decoder;
+                try {
+                    decoder = BitmapRegionDecoder.newInstance(path,false);
+                } catch (IOException e) {
+                    return;
+                }
+
+                final int width = decoder.getWidth();
+                final int height = decoder.getHeight();
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = previewSampleSize(width,height,viewWidth,viewHeight);
+                final Bitmap preview = decoder.decodeRegion(new Rect(0,0,width,height),options);
+                final BitmapRegionDecoder result = decoder;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onImageOpened(generation,result,preview);
+                    }
+                });
+            }
+        });
+    }
+
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    private void onImageOpened(int generation,BitmapRegionDecoder decoder,Bitmap preview){
+        if(generation!=mGeneration){
+            recycleDecoder(decoder);
+            if(preview!=null)
+                preview.recycle();
+            return;
+        }
+
+        mDecoder = decoder;
+        mImageWidth = decoder.getWidth();
+        mImageHeight = decoder.getHeight();
+        mImageBounds.set(0,0,mImageWidth,mImageHeight);
+        mPreview = preview;
+        setupTransform();
+        invalidate();
+    }
+
+    /*
+        上一帧的display list可能还在使用预览图和tile，不recycle，只丢弃引用交给GC，invalidate后不再画它们
+     */
+    private void releaseImage(){
+        mGeneration++;
+        clearTiles();
+        mPreview = null;
+        invalidate();
+        if(mDecoder!=null){
+            recycleDecoder(mDecoder);
+            mDecoder = null;
+        }
+        mImageWidth = 0;
+        mImageHeight = 0;
+    }
+
+    //可能还有正在解码的tile，放到executor中recycle
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    private void recycleDecoder(final BitmapRegionDecoder decoder){
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                decoder.recycle();
+            }
+        });
+    }
+
+    private Executor executor(){
+        if(mExecutor!=null)
+            return mExecutor;
+        if(sDefaultExecutor==null)
+            sDefaultExecutor = Executors.newSingleThreadExecutor();
+        return sDefaultExecutor;
+    }
+
+    /*
+        预览图的宽、高都不超过view的大小(至少TILE_SIZE)，超长的全景图按较长的一边缩小，不会解码整张图片
+        解码后的大小向上取整，按取整后的大小判断
+     */
+    private static int previewSampleSize(int imageWidth,int imageHeight,int viewWidth,int viewHeight){
+        int sampleSize = 1;
+        final int maxWidth = Math.max(viewWidth,TILE_SIZE);
+        final int maxHeight = Math.max(viewHeight,TILE_SIZE);
+        while ((imageWidth+sampleSize-1)/sampleSize>maxWidth || (imageHeight+sampleSize-1)/sampleSize>maxHeight)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        setupTransform();
+    }
+
+    /*
+        初始时图片刚好包裹view，居中
+        最大为图片原始大小的mMaxScale倍
+     */
+    private void setupTransform(){
+        if(mDecoder==null || getWidth()==0 || getHeight()==0)
+            return;
+
+        mViewport.set(0,0,getWidth(),getHeight());
+        final float scale = Math.max(mViewport.width()*1f/mImageWidth,mViewport.height()*1f/mImageHeight);
+        mShapeWidth = Math.max(mViewport.width(),(int) Math.ceil(mImageWidth*scale));
+        mShapeHeight = Math.max(mViewport.height(),(int) Math.ceil(mImageHeight*scale));
+        final int maxWidth = Math.max(mShapeWidth,(int) (mImageWidth*mMaxScale));
+        final int maxHeight = Math.max(mShapeHeight,(int) (mImageHeight*mMaxScale));
+        mTransHelper.setup(mViewport,mShapeWidth,mShapeHeight,maxWidth,maxHeight);
+
+        final int left = (mViewport.width()-mShapeWidth)/2;
+        final int top = (mViewport.height()-mShapeHeight)/2;
+        mVisibleRect.set(left,top,left+mShapeWidth,top+mShapeHeight);
+        mTransHelper.setCurrentShape(mVisibleRect);
+        clearTiles();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return mTransHelper.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if(mDecoder==null || mShapeWidth==0)
+            return;
+
+        final int sampleSize = updateTiles();
+
+        final int saveCount = canvas.save();
+        canvas.concat(mTransHelper.getTransformMatrix());
+        //shape坐标 -> 图片像素坐标
+        canvas.scale(mShapeWidth*1f/mImageWidth,mShapeHeight*1f/mImageHeight);
+        if(mPreview!=null)
+            canvas.drawBitmap(mPreview,null,mImageBounds,mPaint);
+        //其他level缓存中的tile从粗到细垫在下面，当前level的最后画
+        for(int level=mMaxSampleSize;level>=mMinSampleSize;level/=2){
+            if(level!=sampleSize)
+                drawTiles(canvas,level);
+        }
+        drawTiles(canvas,sampleSize);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void drawTiles(Canvas canvas,int sampleSize){
+        for(Tile tile=mCache.first();tile!=null;tile=tile.next){
+            if(tile.bitmap!=null && tile.sampleSize==sampleSize && Rect.intersects(tile.imageRect,mVisibleRect)){
+                canvas.drawBitmap(tile.bitmap,null,tile.imageRect,mPaint);
+                mCache.markDrawn(tile);
+            }
+        }
+    }
+
+    /*
+        根据当前的shape计算inSampleSize和可见的tile，不可见的tile释放，缺少的tile提交解码
+        返回当前的inSampleSize
+     */
+    private int updateTiles(){
+        final Rect shape = mTransHelper.getCurrentShape();
+        final int sampleSize = sampleSizeOf(shape);
+        mMinSampleSize = Math.min(mMinSampleSize,sampleSize);
+        mMaxSampleSize = Math.max(mMaxSampleSize,sampleSize);
+        visibleImageRect(shape,mVisibleRect);
+
+        final int tileSize = TILE_SIZE*sampleSize;
+        final int col0 = mVisibleRect.left/tileSize;
+        final int row0 = mVisibleRect.top/tileSize;
+        final int col1 = (mVisibleRect.right-1)/tileSize;
+        final int row1 = (mVisibleRect.bottom-1)/tileSize;
+
+        //可见的tile标记为受保护并移到LRU的最前面，缺少的提交解码
+        mCache.beginFrame();
+        for(int row=row0;row<=row1;row++){
+            for(int col=col0;col<=col1;col++){
+                if(mCache.get(sampleSize,col,row)==null)
+                    requestTile(sampleSize,col,row,tileSize);
+            }
+        }
+        return sampleSize;
+    }
+
+    /*
+        shape是fling、缩放动画结束时的位置，提前解码那时可见、缓存中还没有的tile
+        预取的tile不受保护，缓存不够时仍然可能在用到之前被淘汰
+     */
+    private void prefetchTiles(Rect shape){
+        if(mDecoder==null || mShapeWidth==0 || shape.isEmpty())
+            return;
+
+        final int sampleSize = sampleSizeOf(shape);
+        visibleImageRect(shape,mPrefetchRect);
+        if(mPrefetchRect.isEmpty())
+            return;
+
+        final int tileSize = TILE_SIZE*sampleSize;
+        final int col1 = (mPrefetchRect.right-1)/tileSize;
+        final int row1 = (mPrefetchRect.bottom-1)/tileSize;
+        for(int row=mPrefetchRect.top/tileSize;row<=row1;row++){
+            for(int col=mPrefetchRect.left/tileSize;col<=col1;col++){
+                if(mCache.find(sampleSize,col,row)==null)
+                    requestTile(mCache.putPrefetch(sampleSize,col,row),tileSize);
+            }
+        }
+    }
+
+    //shape宽度上的图片像素越多，inSampleSize越大
+    private int sampleSizeOf(Rect shape){
+        final float imagePerView = mImageWidth*1f/shape.width();
+        int sampleSize = 1;
+        while (sampleSize*2<=imagePerView)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    //shape为当前位置时，viewport在图片上的范围
+    private void visibleImageRect(Rect shape,Rect out){
+        final float scaleX = mImageWidth*1f/shape.width();
+        final float scaleY = mImageHeight*1f/shape.height();
+        out.set(Math.max(0,(int) ((mViewport.left-shape.left)*scaleX)),
+                Math.max(0,(int) ((mViewport.top-shape.top)*scaleY)),
+                Math.min(mImageWidth,(int) Math.ceil((mViewport.right-shape.left)*scaleX)),
+                Math.min(mImageHeight,(int) Math.ceil((mViewport.bottom-shape.top)*scaleY)));
+    }
+
+    private void requestTile(int sampleSize,int col,int row,int tileSize){
+        requestTile(mCache.put(sampleSize,col,row),tileSize);
+    }
+
+    private void requestTile(final Tile tile,int tileSize){
+        final int sampleSize = tile.sampleSize;
+        final int col = tile.col;
+        final int row = tile.row;
+        tile.imageRect.set(col*tileSize,row*tileSize,
+                Math.min(mImageWidth,(col+1)*tileSize),Math.min(mImageHeight,(row+1)*tileSize));
+        tile.loading = true;
+
+        //解码后的大小，与复用池中的bitmap完全一致时才能复用
+        final Bitmap reusable = TileCache.REUSE_SUPPORTED ? mCache.obtainReusable(
+                (tile.imageRect.width()+sampleSize-1)/sampleSize,(tile.imageRect.height()+sampleSize-1)/sampleSize) : null;
+        final int generation = mGeneration;
+        final BitmapRegionDecoder decoder = mDecoder;
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                //排队期间已经不可见、也不是预取的不再解码
+                final boolean skipped = !mCache.isWanted(tile);
+                final Bitmap result = skipped ? null : decodeTile(decoder,tile,reusable);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onTileDecoded(generation,tile,result,reusable,skipped);
+                    }
+                });
+            }
+        });
+    }
+
+    //后台线程
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static Bitmap decodeTile(BitmapRegionDecoder decoder,Tile tile,Bitmap reusable){
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = tile.sampleSize;
+        if(TileCache.REUSE_SUPPORTED){
+            //之后才能放入复用池
+            options.inMutable = true;
+            options.inBitmap = reusable;
+        }
+        try {
+            return decoder.decodeRegion(tile.imageRect,options);
+        } catch (IllegalArgumentException e) {
+            //大小与reusable不一致，不复用再解码一次
+            options.inBitmap = null;
+        } catch (IllegalStateException e) {
+            //decoder已经recycle
+            return null;
+        }
+
+        try {
+            return decoder.decodeRegion(tile.imageRect,options);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /*
+        skipped - 排队期间不可见，没有解码
+        跳过之后又变得可见的tile，onDraw时还在loading不会再次请求，这里移除后invalidate重新请求
+     */
+    private void onTileDecoded(int generation,Tile tile,Bitmap bitmap,Bitmap reusable,boolean skipped){
+        tile.loading = false;
+        tile.prefetch = false;
+        //没有用上的reusable放回复用池
+        if(reusable!=null){
+            mCache.releaseReusable(reusable);
+            if(reusable!=bitmap){
+                if(generation==mGeneration)
+                    mCache.recycleBitmap(reusable);
+                else
+                    reusable.recycle();
+            }
+        }
+
+        if(generation!=mGeneration || bitmap==null){
+            final boolean retry = skipped && generation==mGeneration && mCache.isVisible(tile);
+            if(bitmap!=null)
+                bitmap.recycle();
+            mCache.remove(tile);
+            if(retry)
+                invalidate();
+            return;
+        }
+
+        if(mCache.setBitmap(tile,bitmap))
+            invalidate();
+        else
+            mCache.recycleBitmap(bitmap);
+    }
+
+    private void clearTiles(){
+        mCache.clear();
+        mMinSampleSize = Integer.MAX_VALUE;
+        mMaxSampleSize = 0;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //重新attach后onDraw会再次请求
+        clearTiles();
+    }
+}
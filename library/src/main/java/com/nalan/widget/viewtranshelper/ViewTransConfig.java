@@ -0,0 +1,71 @@
+package com.nalan.widget.viewtranshelper;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.SparseArray;
+import android.view.ViewConfiguration;
+
+/**
+ * Author： liyi
+ * Date：    2017/6/30.
+ */
+/*
+    ViewTransHelper用到的ViewConfiguration、dimen等配置，按densityDpi和smallestScreenWidthDp缓存
+    (dimen在values-sw600dp中有不同的值，分屏、多窗口时同一个进程里可能同时存在)
+    列表中大量item各自创建ViewTransHelper时，只有每种配置的第一个需要查询，之后直接复用
+    只能在主线程使用
+ */
+final class ViewTransConfig {
+    private static final SparseArray<ViewTransConfig> sCache = new SparseArray<ViewTransConfig>(2);
+
+    final int touchSlop;
+    final float spanSlop;
+    final float minVelocity,maxVelocity;
+    final float touchMinMajor;
+    final float minSpan;
+    final int shortAnimTime;
+    //与GestureDetector一致
+    final int doubleTapSlop;
+    final int doubleTapTimeout;
+    final int longPressDelay;
+    //FlingScroller的参数，与Scroller一致
+    final float ppi;
+    final float scrollFriction;
+
+    static ViewTransConfig get(Context context){
+        final Resources res = context.getResources();
+        final int key = res.getDisplayMetrics().densityDpi<<16 | smallestScreenWidthDp(res);
+        ViewTransConfig config = sCache.get(key);
+        if(config==null){
+            config = new ViewTransConfig(context,res);
+            sCache.put(key,config);
+        }
+        return config;
+    }
+
+    //API 13以下没有sw限定符，资源只随density变化
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR2)
+    private static int smallestScreenWidthDp(Resources res){
+        if(Build.VERSION.SDK_INT<Build.VERSION_CODES.HONEYCOMB_MR2)
+            return 0;
+        return res.getConfiguration().smallestScreenWidthDp & 0xffff;
+    }
+
+    private ViewTransConfig(Context context,Resources res){
+        final ViewConfiguration configuration = ViewConfiguration.get(context);
+        touchSlop = configuration.getScaledTouchSlop();
+        spanSlop = touchSlop*2;
+        minVelocity = configuration.getScaledMinimumFlingVelocity();
+        maxVelocity = configuration.getScaledMaximumFlingVelocity();
+        touchMinMajor = res.getDimensionPixelSize(R.dimen.config_minScalingTouchMajor);
+        minSpan = res.getDimensionPixelSize(R.dimen.config_minScalingSpan);
+        shortAnimTime = res.getInteger(android.R.integer.config_shortAnimTime);
+        doubleTapSlop = configuration.getScaledDoubleTapSlop();
+        doubleTapTimeout = ViewConfiguration.getDoubleTapTimeout();
+        longPressDelay = ViewConfiguration.getTapTimeout()+ViewConfiguration.getLongPressTimeout();
+        ppi = res.getDisplayMetrics().density*160.0f;
+        scrollFriction = ViewConfiguration.getScrollFriction();
+    }
+}
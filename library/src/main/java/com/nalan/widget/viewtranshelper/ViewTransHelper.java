@@ -1,23 +1,43 @@
 package com.nalan.widget.viewtranshelper;
 
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.Resources;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.os.Build;
 import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.view.ViewCompat;
-import android.view.GestureDetector;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
-import android.view.ViewConfiguration;
 import android.view.ViewParent;
-import android.widget.Scroller;
+import android.view.WindowManager;
+import android.view.animation.AnimationUtils;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import com.nalan.widget.viewtranshelper.core.FlingScroller;
+import com.nalan.widget.viewtranshelper.core.LatencyHistogram;
+import com.nalan.widget.viewtranshelper.core.PointerDigest;
+import com.nalan.widget.viewtranshelper.core.TouchPredictor;
+import com.nalan.widget.viewtranshelper.core.TransDelta;
 
 /**
  * Author： liyi
  * Date：    2017/2/28.
  */
 //支持tap、double tap放大、drag、fling、scale
+/*
+    内存分配：从ACTION_DOWN到fling结束，稳定状态下不产生任何分配
+    - VelocityTracker第一次ACTION_DOWN时obtain，之后每个手势结束只clear，不再recycle/obtain
+    - FlingScroller在第一次ACTION_DOWN时创建，各种临时对象在开启对应功能时创建，之后复用
+    - tap、double tap由状态机自己识别；long press只在设置了listener时post，Message来自framework的对象池
+    - postOnAnimation最终走Choreographer，CallbackRecord同样来自对象池
+    新增逻辑时不要在processTouchEvent、ScrollRunnable.run以及Callback的实现中new对象，
+    androidTest中的ViewTransHelperAllocationTest会检查这一点
+ */
 public class ViewTransHelper {
     private static final int STATE_IDLE = 0;
 
@@ -27,21 +47,38 @@ public class ViewTransHelper {
 
     private static final int STATE_SCALING = 3;
 
+    //OnGestureLifecycleListener.onGestureActive的phase
+    public static final int PHASE_DRAGGING = 1;
+
+    public static final int PHASE_SCALING = 2;
+
+    public static final int PHASE_FLINGING = 3;
+
+    public static final int PHASE_ZOOMING = 4;
+
     private int mTouchState;
 
     private View mRootView;
     private Callback mCallback;
+    //Callback实现了TransformCallback时，drag、scale都通过onTransform交给它
+    private TransformCallback mTransformCallback;
 
     //与single drag pointer相关
     private int mTouchSlop;
     private int mActivePointerId;
 
+    //整个生命周期只obtain一次，手势结束时clear
     private VelocityTracker mVelocityTracker;
     private float mMinVelocity,mMaxVelocity;
 
     private float mLastMotionX,mLastMotionY;
 
     private ScrollRunnable mScrollRunnable;
+    //为null时每个runnable各自postOnAnimation
+    private AnimationScheduler mAnimationScheduler;
+    private ZoomRunnable mZoomRunnable;
+    private FlingRangeCallback mFlingRangeCallback;
+    private Rect mFlingRange;
 
     //与multi scale相关
     private float mSpanSlop;
@@ -51,71 +88,434 @@ public class ViewTransHelper {
 
     private float mInstantFocusX,mInstantFocusY;
     private float mInstantSpanX,mInstantSpanY;
-
-    //tap、double tap
-    private GestureDetector mGestureDetector;
+    //digest时各个pointer的坐标，pointer更多时才重新分配
+    private static final int INITIAL_DIGEST_POINTERS = 4;
+    private float[] mDigestX,mDigestY;
+    private PointerDigest mDigest;
+
+    //historical samples，高采样率的屏幕上一个ACTION_MOVE会带多个sample
+    private static final int HISTORY_CURRENT = -1;
+    private boolean mHistoricalSamplesEnabled;
+    private TransDelta mPendingScale;
+    private boolean mPendingDrag;
+    private float mPendingMotionX,mPendingMotionY;
+
+    //frame coalescing，一帧内的drag、scale合并成一次
+    private boolean mFrameCoalescingEnabled;
+    private TransDelta mFrameDelta;
+    //Callback只接受整数的平移，小数部分留到下一次
+    private float mDragRemainderX,mDragRemainderY;
+    private FrameRunnable mFrameRunnable;
+
+    //dirty region，为null表示invalidate整个view
+    private DirtyBoundsCallback mDirtyBoundsCallback;
+    private int mDirtyMargin;
+    private Rect mDirtyRect,mDirtyTempRect;
+
+    //tap、double tap、long press，与drag共用touch slop、pointer的处理，每个事件只检查一次
+    private static final int DOUBLE_TAP_MIN_TIME = 40;
     private OnTapListener mOnTapListener;
-
+    private OnLongPressListener mOnLongPressListener;
+    private int mDoubleTapSlop;
+    private int mDoubleTapTimeout;
+    private int mLongPressDelay;
+    //只有一个pointer、没有超出slop、没有long press
+    private boolean mTapCandidate;
+    private boolean mDoubleTapping;
+    private float mTapDownX,mTapDownY;
+    //上一次ACTION_UP是tap时，记录它的ACTION_DOWN位置、ACTION_UP时间，用于判断double tap
+    private boolean mLastUpWasTap;
+    private float mLastTapDownX,mLastTapDownY;
+    private long mLastTapUpTime;
+    private LongPressRunnable mLongPressRunnable;
+
+    private OnSettlePredictionListener mSettlePredictionListener;
+
+    //手势的生命周期，从第一次变换开始，到手指离开、fling和缩放动画都结束为止
+    private OnGestureLifecycleListener mLifecycleListener;
+    private TransformStateCallback mTransformStateCallback;
+    private boolean mGestureActive;
+    private boolean mGestureTouching;
+    private int mGesturePhase;
+
+    //metrics，为null时不统计，只多一次判断
+    private GestureMetrics mMetrics;
+    private OnGestureMetricsListener mMetricsListener;
+    private boolean mMetricsTouching;
+    private long mMetricsTransformStart;
+    //API 16以上用Choreographer的frameTimeNanos判断错过的vsync，以下为null
+    private Object mMetricsFrameCallback;
+    private boolean mMetricsFramePosted;
+
+    /*
+        touch prediction，drag时mLastMotionX/Y只记录手指的位置，内容另外偏移了mPredictAppliedX/Y，resetPrediction时移回
+        scale时的mLastSpanX/Y是包含预测量的、已经交给Callback的span
+     */
+    private boolean mPredictionEnabled;
+    private TouchPredictor mPredictX,mPredictY;
+    private int mPredictAppliedX,mPredictAppliedY;
+    private TouchPredictor mPredictSpanX,mPredictSpanY;
+
+    //input到frame的延迟，为null时不统计
+    private LatencyTracker mLatencyTracker;
+    private long mLatencyEventTime;
+
+    /*
+        构造只读取按density缓存的ViewTransConfig，FlingScroller等在第一次ACTION_DOWN时才创建，
+        frame coalescing、dirty region等用到的对象在开启时创建，列表中从未被触摸的item几乎没有开销
+     */
     public ViewTransHelper(@NonNull View rootView,@NonNull Callback callback){
-        Context context = rootView.getContext();
         mRootView = rootView;
         mCallback = callback;
+        if(callback instanceof TransformCallback)
+            mTransformCallback = (TransformCallback) callback;
+        if(callback instanceof FlingRangeCallback)
+            mFlingRangeCallback = (FlingRangeCallback) callback;
 
         mTouchState = STATE_IDLE;
 
-        mScrollRunnable = new ScrollRunnable(context);
+        final ViewTransConfig config = ViewTransConfig.get(rootView.getContext());
+        mTouchSlop = config.touchSlop;
+        mMinVelocity = config.minVelocity;
+        mMaxVelocity = config.maxVelocity;
+        mSpanSlop = config.spanSlop;
+        mTouchMinMajor = config.touchMinMajor;
+        mMinSpan = config.minSpan;
+        mDoubleTapSlop = config.doubleTapSlop;
+        mDoubleTapTimeout = config.doubleTapTimeout;
+        mLongPressDelay = config.longPressDelay;
+
+        mZoomRunnable = new ZoomRunnable(config.shortAnimTime);
+    }
 
-        final ViewConfiguration configuration = ViewConfiguration.get(context);
-        mTouchSlop = configuration.getScaledTouchSlop();
-        mMinVelocity = configuration.getScaledMinimumFlingVelocity();
-        mMaxVelocity = configuration.getScaledMaximumFlingVelocity();
+    //第一次ACTION_DOWN时创建fling相关的对象
+    private void ensureTouchMachinery(){
+        if(mScrollRunnable!=null)
+            return;
+
+        mScrollRunnable = new ScrollRunnable(ViewTransConfig.get(mRootView.getContext()));
+        if(mFlingRangeCallback!=null)
+            mFlingRange = new Rect();
+        mDigestX = new float[INITIAL_DIGEST_POINTERS];
+        mDigestY = new float[INITIAL_DIGEST_POINTERS];
+        mDigest = new PointerDigest();
+    }
 
-        mSpanSlop = ViewConfiguration.get(context).getScaledTouchSlop() * 2;
-        final Resources res = context.getResources();
-        mTouchMinMajor = res.getDimensionPixelSize(R.dimen.config_minScalingTouchMajor);
-        mMinSpan = res.getDimensionPixelSize(R.dimen.config_minScalingSpan);
+    public void setOnTapListener(OnTapListener listener){
+        mOnTapListener = listener;
+    }
 
-        mGestureDetector = new GestureDetector(context,new GestureDetector.SimpleOnGestureListener(){
-            @Override
-            public boolean onDoubleTap(MotionEvent e) {
-                doScale(mCallback.getScaleLevel(),mCallback.getScaleLevel(),e.getX(),e.getY());
-                return super.onDoubleTap(e);
-            }
+    //fling、缩放动画开始时回调它们结束时的总变换，用于提前加载结束时可见的内容
+    public void setOnSettlePredictionListener(OnSettlePredictionListener listener){
+        mSettlePredictionListener = listener;
+    }
 
-            @Override
-            public boolean onSingleTapUp(MotionEvent e) {
-                if(mOnTapListener!=null)
-                    return mOnTapListener.onTap(e.getX(),e.getY());
-                else
-                    return super.onSingleTapUp(e);
-            }
-        });
+    //只有设置了listener时，ACTION_DOWN才会post long press的检查
+    public void setOnLongPressListener(OnLongPressListener listener){
+        if(listener!=null && mLongPressRunnable==null)
+            mLongPressRunnable = new LongPressRunnable();
+        else if(listener==null && mLongPressRunnable!=null)
+            mRootView.removeCallbacks(mLongPressRunnable);
+        mOnLongPressListener = listener;
     }
 
-    public void setOnTapListener(OnTapListener listener){
-        mOnTapListener = listener;
+    /*
+        手势开始、阶段变化、完全停止时回调，停止时带上最终的matrix和shape
+        Callback需要实现TransformStateCallback
+     */
+    public void setOnGestureLifecycleListener(OnGestureLifecycleListener listener){
+        if(listener!=null && !(mCallback instanceof TransformStateCallback))
+            throw new IllegalStateException("Callback需要实现TransformStateCallback");
+        mTransformStateCallback = listener!=null ? (TransformStateCallback) mCallback : null;
+        mLifecycleListener = listener;
+        if(listener==null){
+            mGestureActive = false;
+            mGesturePhase = 0;
+        }
+    }
+
+    /*
+        每个手势结束时回调一次统计结果，为null时关闭统计
+        回调中的GestureMetrics会被复用，需要保存时复制一份
+     */
+    public void setGestureMetricsListener(OnGestureMetricsListener listener){
+        mMetricsListener = listener;
+        if(listener==null)
+            mMetrics = null;
+        else if(mMetrics==null){
+            WindowManager wm = (WindowManager) mRootView.getContext().getSystemService(Context.WINDOW_SERVICE);
+            mMetrics = new GestureMetrics(wm.getDefaultDisplay().getRefreshRate());
+            if(mMetricsFrameCallback==null && Build.VERSION.SDK_INT>=Build.VERSION_CODES.JELLY_BEAN)
+                mMetricsFrameCallback = new MetricsFrameCallback();
+        }
+    }
+
+    /*
+        double tap、animateScale的动画，duration<=0时不做动画，直接缩放到目标
+        interpolator为null时使用DecelerateInterpolator
+     */
+    public void setZoomAnimation(Interpolator interpolator,int duration){
+        mZoomRunnable.mInterpolator = interpolator;
+        mZoomRunnable.mDuration = duration;
+    }
+
+    /*
+        以(px,py)为中心，在多帧内缩放sx、sy倍，新的ACTION_DOWN会取消动画
+        每帧的缩放都会经过Callback的修正，所以实际的结果可能比sx、sy小
+     */
+    public void animateScale(float sx, float sy, float px, float py){
+        mZoomRunnable.cancel();
+        if(mZoomRunnable.mDuration<=0){
+            notifyGesturePhase(PHASE_ZOOMING);
+            doScale(sx,sy,px,py);
+            maybeSettleGesture();
+        }else{
+            if(mSettlePredictionListener!=null)
+                mSettlePredictionListener.onZoomPredicted(sx,sy,px,py);
+            mZoomRunnable.start(sx,sy,px,py);
+        }
+    }
+
+    public boolean isZooming(){
+        return mZoomRunnable.mRunning;
+    }
+
+    /*
+        Callback实现了DirtyBoundsCallback时，只invalidate变换前后shape范围的并集，再向外扩展margin
+        注意：API 21以后硬件加速的view会忽略这个区域，只对软件绘制的view、layer有效
+     */
+    public void setDirtyRegionEnabled(boolean enabled,int margin){
+        if(enabled && !(mCallback instanceof DirtyBoundsCallback))
+            throw new IllegalStateException("Callback需要实现DirtyBoundsCallback");
+
+        if(enabled && mDirtyRect==null){
+            mDirtyRect = new Rect();
+            mDirtyTempRect = new Rect();
+        }
+        mDirtyBoundsCallback = enabled ? (DirtyBoundsCallback) mCallback : null;
+        mDirtyMargin = margin;
+    }
+
+    /*
+        开启后drag、scale把active pointer、span外推到下一个vsync，内容不再落后手指一帧，Callback不变
+        horizon - 外推的毫秒数，通常是一个vsync，例如16；<=0时关闭
+        damping - 0到1，预测量的比例，例如0.8f
+        correction - 0到1，新的sample到来时向新的预测值修正的比例，例如0.5f
+        drag的velocity来自fling用的VelocityTracker，span的velocity来自相邻sample的差分
+     */
+    public void setTouchPrediction(float horizon,float damping,float correction){
+        if(horizon<=0){
+            //已经交给Callback的预测量先移回
+            resetPrediction();
+            mPredictionEnabled = false;
+            return;
+        }
+        mPredictionEnabled = true;
+
+        if(mPredictX==null){
+            mPredictX = new TouchPredictor();
+            mPredictY = new TouchPredictor();
+            mPredictSpanX = new TouchPredictor();
+            mPredictSpanY = new TouchPredictor();
+        }
+        mPredictX.setup(horizon,damping,correction);
+        mPredictY.setup(horizon,damping,correction);
+        mPredictSpanX.setup(horizon,damping,correction);
+        mPredictSpanY.setup(horizon,damping,correction);
+        resetPrediction();
+    }
+
+    /*
+        开启后统计每次drag、scale从MotionEvent.getEventTime()到绘制它的那一帧的延迟，结果在getLatencyHistogram中
+        关闭时丢弃已有的统计
+     */
+    public void setLatencyTrackingEnabled(boolean enabled){
+        if(enabled && mLatencyTracker==null)
+            mLatencyTracker = new LatencyTracker(mRootView);
+        else if(!enabled && mLatencyTracker!=null){
+            mLatencyTracker.cancel();
+            mLatencyTracker = null;
+        }
+    }
+
+    //单位微秒，没有开启时返回null
+    public LatencyHistogram getLatencyHistogram(){
+        return mLatencyTracker!=null ? mLatencyTracker.getHistogram() : null;
+    }
+
+    /*
+        开启后fling、缩放动画以及frame coalescing的每一帧都交给进程共用的AnimationScheduler，
+        所有开启的ViewTransHelper在同一个Choreographer回调中推进，适合RecyclerView、dashboard中大量同时动画的view
+        只能在主线程使用
+     */
+    public void setSharedAnimationSchedulerEnabled(boolean enabled){
+        mAnimationScheduler = enabled ? AnimationScheduler.getInstance() : null;
+    }
+
+    private void postAnimation(Runnable runnable){
+        if(mAnimationScheduler!=null)
+            mAnimationScheduler.post(mRootView,runnable);
+        else
+            ViewCompat.postOnAnimation(mRootView,runnable);
+    }
+
+    //两种方式都移除，post之后可能切换过shared scheduler
+    private void removeAnimation(Runnable runnable){
+        if(mAnimationScheduler!=null)
+            mAnimationScheduler.remove(runnable);
+        mRootView.removeCallbacks(runnable);
+    }
+
+    /*
+        开启后drag、scale不再立即回调，而是累积起来在下一帧(API 16以上由Choreographer驱动)开始时一次性交给Callback，
+        一帧内有多个输入事件时，Matrix只变换、修正一次
+     */
+    public void setFrameCoalescingEnabled(boolean enabled){
+        if(enabled && mFrameDelta==null){
+            mFrameDelta = new TransDelta();
+            mFrameRunnable = new FrameRunnable();
+        }
+        if(!enabled)
+            flushFrameDelta();
+        mFrameCoalescingEnabled = enabled;
+    }
+
+    /*
+        开启后ACTION_MOVE中的每个历史sample都参与drag slop、focus、span的计算，但每个事件仍然只回调一次
+        velocity不受影响，VelocityTracker.addMovement本身就会处理历史sample
+     */
+    public void setHistoricalSamplesEnabled(boolean enabled){
+        if(enabled && mPendingScale==null)
+            mPendingScale = new TransDelta();
+        mHistoricalSamplesEnabled = enabled;
     }
 
     private boolean doFling(int dx,int dy){
+        beginTransform();
         boolean ret = mCallback.onFling(dx,dy);
-        ViewCompat.postInvalidateOnAnimation(mRootView);
+        invalidate();
         return ret;
     }
 
     private void doDrag(int dx, int dy){
-        mCallback.onDrag(dx,dy);
-        ViewCompat.postInvalidateOnAnimation(mRootView);
+        trackLatency();
+        if(mFrameCoalescingEnabled){
+            mFrameDelta.postTranslate(dx,dy);
+            mFrameRunnable.schedule();
+            return;
+        }
+
+        beginTransform();
+        if(mTransformCallback!=null)
+            mTransformCallback.onTransform(1,1,0,0,dx,dy);
+        else
+            mCallback.onDrag(dx,dy);
+        invalidate();
     }
 
     private void doScale(float sx, float sy, float px, float py){
-        mCallback.onScale(sx,sy,px,py);
-        ViewCompat.postInvalidateOnAnimation(mRootView);
+        if(mFrameCoalescingEnabled){
+            mFrameDelta.postScale(sx,sy,px,py);
+            mFrameRunnable.schedule();
+            return;
+        }
+
+        dispatchScale(sx,sy,px,py);
     }
 
-    public boolean processTouchEvent(MotionEvent ev){
-        mGestureDetector.onTouchEvent(ev);
+    private void dispatchScale(float sx, float sy, float px, float py){
+        beginTransform();
+        if(mTransformCallback!=null)
+            mTransformCallback.onTransform(sx,sy,px,py,0,0);
+        else
+            mCallback.onScale(sx,sy,px,py);
+        invalidate();
+    }
 
+    //把这一帧内累积的drag、scale一次交给Callback
+    private void flushFrameDelta(){
+        if(mFrameDelta==null || mFrameDelta.isEmpty())
+            return;
+
+        dispatchDelta(mFrameDelta);
+        mFrameDelta.reset();
+    }
+
+    /*
+        先围绕pivot缩放，再平移剩余的translate
+        scale接近1时pivot退化为最后的focus，translate不为0，两部分都要交给Callback
+     */
+    private void dispatchDelta(TransDelta delta){
+        beginTransform();
+        if(mTransformCallback!=null){
+            //一次回调、一次修正，平移不需要取整
+            mTransformCallback.onTransform(delta.getScaleX(),delta.getScaleY(),delta.getPivotX(),delta.getPivotY(),
+                    delta.getTranslateX(),delta.getTranslateY());
+            invalidate();
+            return;
+        }
+
+        if(delta.hasScale())
+            mCallback.onScale(delta.getScaleX(),delta.getScaleY(),delta.getPivotX(),delta.getPivotY());
+
+        float tx = delta.getTranslateX()+mDragRemainderX;
+        float ty = delta.getTranslateY()+mDragRemainderY;
+        int dx = (int) tx;
+        int dy = (int) ty;
+        mDragRemainderX = tx-dx;
+        mDragRemainderY = ty-dy;
+        if(dx!=0 || dy!=0)
+            mCallback.onDrag(dx,dy);
+        invalidate();
+    }
+
+    //只统计由输入引起的drag、scale，fling、缩放动画不算
+    private void trackLatency(){
+        if(mLatencyTracker!=null)
+            mLatencyTracker.onTransform(mLatencyEventTime);
+    }
+
+    //记录变换前的范围
+    private void beginTransform(){
+        if(mMetrics!=null)
+            mMetricsTransformStart = System.nanoTime();
+        if(mDirtyBoundsCallback!=null)
+            mDirtyBoundsCallback.getDirtyBounds(mDirtyRect);
+    }
+
+    //dirty region开启时只invalidate变换前后范围的并集
+    private void invalidate(){
+        if(mMetrics!=null){
+            mMetrics.callbackCount++;
+            mMetrics.callbackNanos += System.nanoTime()-mMetricsTransformStart;
+        }
+        if(mDirtyBoundsCallback==null){
+            ViewCompat.postInvalidateOnAnimation(mRootView);
+            return;
+        }
+
+        mDirtyBoundsCallback.getDirtyBounds(mDirtyTempRect);
+        mDirtyRect.union(mDirtyTempRect);
+        mDirtyRect.inset(-mDirtyMargin,-mDirtyMargin);
+        ViewCompat.postInvalidateOnAnimation(mRootView,mDirtyRect.left,mDirtyRect.top,mDirtyRect.right,mDirtyRect.bottom);
+    }
+
+    public boolean processTouchEvent(MotionEvent ev){
         final int action = ev.getActionMasked();
+        if(mMetrics!=null)
+            recordTouchMetrics(ev,action);
+        if(mLatencyTracker!=null)
+            mLatencyEventTime = ev.getEventTime();
+
+        //必须在processTap之前，否则会把double tap刚开始的zoom取消掉
+        if(action==MotionEvent.ACTION_DOWN){
+            mZoomRunnable.cancel();
+            mGestureTouching = true;
+        }
+        ensureTouchMachinery();
+
+        processTap(ev,action);
+
         final boolean scaleEnableX = mCallback.canScaleHorizontal();
         final boolean scaleEnableY = mCallback.canScaleVertical();
 
@@ -129,6 +529,11 @@ public class ViewTransHelper {
             }
 
             clearTouchHistory();
+            resetPrediction();
+            //fling要从最新的位置开始
+            flushFrameDelta();
+            mDragRemainderX = 0;
+            mDragRemainderY = 0;
 
             if(mTouchState ==STATE_DRAGGING && action==MotionEvent.ACTION_UP){
                 final VelocityTracker velocityTracker = mVelocityTracker;
@@ -141,9 +546,15 @@ public class ViewTransHelper {
 
             if (mVelocityTracker != null) {
                 mActivePointerId = -1;
-                mVelocityTracker.recycle();
-                mVelocityTracker = null;
+                mVelocityTracker.clear();
+            }
+
+            if(mMetrics!=null){
+                mMetricsTouching = false;
+                maybeReportMetrics();
             }
+            mGestureTouching = false;
+            maybeSettleGesture();
             return true;
         }
 
@@ -152,8 +563,9 @@ public class ViewTransHelper {
         }
         mVelocityTracker.addMovement(ev);
 
-        if(scaleEnableX || scaleEnableY)
-            addTouchHistory(ev);
+        //touch major只用于span：单个pointer的ACTION_MOVE不需要，其余的合并到digest中，没有经过digest的在最后补上
+        mTouchHistoryPending = (scaleEnableX || scaleEnableY)
+                && (action!=MotionEvent.ACTION_MOVE || ev.getPointerCount()>1);
 
         switch (action){
             case MotionEvent.ACTION_DOWN:{
@@ -165,10 +577,12 @@ public class ViewTransHelper {
                 mLastMotionY = y;
                 //scale数据的reset
                 mInitialSpan = 0;
+                resetPrediction();
 
                 if(mTouchState ==STATE_SETTLING){
                     mScrollRunnable.abortAnimation();
                     mTouchState = STATE_DRAGGING;
+                    notifyGesturePhase(PHASE_DRAGGING);
                     final ViewParent parent = mRootView.getParent();
                     if (parent != null)
                         parent.requestDisallowInterceptTouchEvent(true);
@@ -183,6 +597,8 @@ public class ViewTransHelper {
             case MotionEvent.ACTION_POINTER_UP: {
                 final int actionIndex = ev.getActionIndex();
                 final int actionId = ev.getPointerId(actionIndex);
+                //基准位置重新取实际的值
+                resetPrediction();
 
                 if(!scaleEnableX && !scaleEnableY){
                     if(action==MotionEvent.ACTION_POINTER_DOWN){
@@ -226,61 +642,314 @@ public class ViewTransHelper {
 
             //是drag还是scale，都需要先计算相应的值
             case MotionEvent.ACTION_MOVE: {
-                final int count = ev.getPointerCount();
-                //ScaleGestureDetector的处理是如果span值过小，即各个pointers距离focus pointer的平均距离非常小，
-                //就停止scale。但是，如果此时手指再散开呢？从流畅性来讲，应该是不需要判断就进入scale状态
-                //所以，这里不做这种处理。只是在ACTION_POINTER_DOWN、ACTION_POINTER_UP时考虑
-                if(count>1 && (scaleEnableX || scaleEnableY)){
-                    refreshInstantScaleInfo(ev);
-
-                    float instantSpanSquare = mInstantSpanX*mInstantSpanX+mInstantSpanY*mInstantSpanY;
-                    float minSpanSquare = mMinSpan*mMinSpan;
-                    float initialSpanSquare = mInitialSpan*mInitialSpan;
-                    float spanSlopSquare = mSpanSlop*mSpanSlop;
-
-                    if (mTouchState!=STATE_SCALING && instantSpanSquare >=  minSpanSquare && Math.abs(instantSpanSquare - initialSpanSquare) > spanSlopSquare) {
-                        mTouchState = STATE_SCALING;
-                        mLastSpanX = mInstantSpanX;
-                        mLastSpanY  = mInstantSpanY;
-                    }else if (mTouchState==STATE_SCALING) {
-                        doScale(mInstantSpanX/mLastSpanX,mInstantSpanY/mLastSpanY,mInstantFocusX,mInstantFocusY);
+                if(mHistoricalSamplesEnabled){
+                    //每个历史sample都走一遍状态机，结果合并成一次doScale/doDrag
+                    mPendingScale.reset();
+                    mPendingDrag = false;
+                    final int historySize = ev.getHistorySize();
+                    for(int h=0;h<historySize;h++)
+                        processMoveSample(ev,h,scaleEnableX || scaleEnableY);
+                    processMoveSample(ev,HISTORY_CURRENT,scaleEnableX || scaleEnableY);
+                    flushPendingMove();
+                }else
+                    processMoveSample(ev,HISTORY_CURRENT,scaleEnableX || scaleEnableY);
+                break;
+            }
+        }
 
-                        mLastSpanX = mInstantSpanX;
-                        mLastSpanY  = mInstantSpanY;
-                    }
-                }else{
-                    int pointerIndex = ev.findPointerIndex(mActivePointerId);
-                    float x = ev.getX(pointerIndex);
-                    float y = ev.getY(pointerIndex);
-                    int dx = (int) (x-mLastMotionX);
-                    int dy = (int) (y-mLastMotionY);
-                    if(mTouchState!=STATE_DRAGGING){
-                        if(checkTouchSlop(dx,dy))
-                            mTouchState = STATE_DRAGGING;
-                    }else {
-                        doDrag(dx, dy);
-                        mLastMotionX = x;
-                        mLastMotionY = y;
+        if(mTouchHistoryPending)
+            addTouchHistory(ev);
+        return true;
+    }
+
+    /*
+        与GestureDetector的规则一致：
+        tap - 只有一个pointer，移动不超过touch slop，没有long press，ACTION_UP时回调
+        double tap - 上一次是tap，ACTION_UP到这次ACTION_DOWN的时间在double tap timeout内，两次ACTION_DOWN的距离在double tap slop内，
+                     ACTION_DOWN时开始缩放，第二次的ACTION_UP不再算tap
+        long press - ACTION_DOWN之后tap timeout+long press timeout内仍然是tap
+     */
+    private void processTap(MotionEvent ev,int action){
+        switch (action){
+            case MotionEvent.ACTION_DOWN:{
+                final float x = ev.getX();
+                final float y = ev.getY();
+                mDoubleTapping = false;
+                if(mLastUpWasTap){
+                    final long delta = ev.getEventTime()-mLastTapUpTime;
+                    final float dx = x-mLastTapDownX;
+                    final float dy = y-mLastTapDownY;
+                    if(delta>=DOUBLE_TAP_MIN_TIME && delta<=mDoubleTapTimeout && dx*dx+dy*dy<mDoubleTapSlop*mDoubleTapSlop){
+                        mDoubleTapping = true;
+                        animateScale(mCallback.getScaleLevel(),mCallback.getScaleLevel(),x,y);
                     }
                 }
+                mLastUpWasTap = false;
+
+                mTapCandidate = true;
+                mTapDownX = x;
+                mTapDownY = y;
+                if(mOnLongPressListener!=null && !mDoubleTapping){
+                    mRootView.removeCallbacks(mLongPressRunnable);
+                    mRootView.postDelayed(mLongPressRunnable,mLongPressDelay);
+                }
                 break;
             }
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                cancelTap();
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                if(mTapCandidate){
+                    final float dx = ev.getX()-mTapDownX;
+                    final float dy = ev.getY()-mTapDownY;
+                    if(dx*dx+dy*dy>mTouchSlop*mTouchSlop)
+                        cancelTap();
+                }
+                break;
+
+            case MotionEvent.ACTION_UP:
+                if(mTapCandidate && !mDoubleTapping){
+                    mLastUpWasTap = true;
+                    mLastTapUpTime = ev.getEventTime();
+                    mLastTapDownX = mTapDownX;
+                    mLastTapDownY = mTapDownY;
+                    if(mOnTapListener!=null)
+                        mOnTapListener.onTap(ev.getX(),ev.getY());
+                }
+                cancelTap();
+                mDoubleTapping = false;
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                cancelTap();
+                mDoubleTapping = false;
+                mLastUpWasTap = false;
+                break;
+        }
+    }
+
+    private void cancelTap(){
+        mTapCandidate = false;
+        if(mLongPressRunnable!=null)
+            mRootView.removeCallbacks(mLongPressRunnable);
+    }
+
+    private void recordTouchMetrics(MotionEvent ev,int action){
+        if(action==MotionEvent.ACTION_DOWN){
+            //新的手势打断了上一个手势的fling、缩放动画
+            if(mMetrics.mActive)
+                reportMetrics();
+            mMetrics.begin(ev.getEventTime());
+            mMetricsTouching = true;
         }
 
-        return true;
+        mMetrics.events++;
+        if(action==MotionEvent.ACTION_MOVE)
+            mMetrics.historicalSamples += ev.getHistorySize();
     }
 
-    private boolean checkTouchSlop(int dx, int dy) {
-        boolean dragEnableX = mCallback.canDragHorizontal();
-        boolean dragEnableY = mCallback.canDragVertical();
+    //手指离开、fling和缩放动画都结束后才算一个手势结束
+    private void maybeReportMetrics(){
+        if(mMetrics!=null && mMetrics.mActive && !mMetricsTouching
+                && mTouchState!=STATE_SETTLING && !mZoomRunnable.mRunning)
+            reportMetrics();
+    }
+
+    //第一次进入某个阶段时先回调onGestureStart
+    private void notifyGesturePhase(int phase){
+        if(mLifecycleListener==null)
+            return;
+        if(!mGestureActive){
+            mGestureActive = true;
+            mLifecycleListener.onGestureStart();
+        }
+        if(phase!=mGesturePhase){
+            mGesturePhase = phase;
+            mLifecycleListener.onGestureActive(phase);
+        }
+    }
+
+    //与maybeReportMetrics相同的条件，fling中再次按下会接着同一个手势
+    private void maybeSettleGesture(){
+        if(!mGestureActive || mGestureTouching || mTouchState==STATE_SETTLING || mZoomRunnable.mRunning)
+            return;
+        mGestureActive = false;
+        mGesturePhase = 0;
+        mLifecycleListener.onGestureSettled(mTransformStateCallback.getTransformMatrix(),mTransformStateCallback.getCurrentShape());
+    }
+
+    /*
+        fling、缩放动画post下一帧时调用，由frame callback记录那一帧的vsync时间
+        毫秒精度的时间无法可靠地判断8.3ms、16.6ms的间隔
+     */
+    private void scheduleMetricsFrame(){
+        if(mMetrics==null || mMetricsFrameCallback==null || mMetricsFramePosted)
+            return;
+        mMetricsFramePosted = true;
+        postMetricsFrameCallback();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postMetricsFrameCallback(){
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mMetricsFrameCallback);
+    }
 
-        if (dragEnableX && dragEnableY)
-            return dx * dx + dy * dy > mTouchSlop * mTouchSlop;
-        else if (dragEnableX)
-            return Math.abs(dx) > mTouchSlop;
-        else if (dragEnableY)
-            return Math.abs(dy) > mTouchSlop;
-        return false;
+    //fling、缩放动画的每一帧，API 16以下没有vsync时间，用当前时间
+    private void recordMetricsFrame(){
+        if(mMetricsFrameCallback==null)
+            mMetrics.onFrame(System.nanoTime());
+    }
+
+    private void reportMetrics(){
+        mMetrics.endTime = SystemClock.uptimeMillis();
+        mMetrics.mActive = false;
+        mMetricsListener.onGestureMetrics(mMetrics);
+    }
+
+    /*
+        historyPos - 历史sample的下标，HISTORY_CURRENT表示当前的位置
+        开启historical samples时，scale、drag只记录下来，由flushPendingMove统一处理
+     */
+    private void processMoveSample(MotionEvent ev,int historyPos,boolean scaleEnable){
+        final int count = ev.getPointerCount();
+        //ScaleGestureDetector的处理是如果span值过小，即各个pointers距离focus pointer的平均距离非常小，
+        //就停止scale。但是，如果此时手指再散开呢？从流畅性来讲，应该是不需要判断就进入scale状态
+        //所以，这里不做这种处理。只是在ACTION_POINTER_DOWN、ACTION_POINTER_UP时考虑
+        if(count>1 && scaleEnable){
+            refreshInstantScaleInfo(ev,historyPos);
+
+            if (mTouchState!=STATE_SCALING && PointerDigest.exceedsSpanSlop(mInstantSpanX,mInstantSpanY,mInitialSpan,mMinSpan,mSpanSlop)) {
+                mTouchState = STATE_SCALING;
+                notifyGesturePhase(PHASE_SCALING);
+                mLastSpanX = mInstantSpanX;
+                mLastSpanY  = mInstantSpanY;
+                resetPrediction();
+            }else if (mTouchState==STATE_SCALING) {
+                if(mPredictionEnabled)
+                    predictSpan(ev,historyPos);
+
+                float sx = mInstantSpanX/mLastSpanX;
+                float sy = mInstantSpanY/mLastSpanY;
+                if(mHistoricalSamplesEnabled)
+                    mPendingScale.postScale(sx,sy,mInstantFocusX,mInstantFocusY);
+                else{
+                    trackLatency();
+                    doScale(sx,sy,mInstantFocusX,mInstantFocusY);
+                }
+
+                mLastSpanX = mInstantSpanX;
+                mLastSpanY  = mInstantSpanY;
+            }
+        }else{
+            int pointerIndex = ev.findPointerIndex(mActivePointerId);
+            float x = getX(ev,pointerIndex,historyPos);
+            float y = getY(ev,pointerIndex,historyPos);
+            int dx = (int) (x-mLastMotionX);
+            int dy = (int) (y-mLastMotionY);
+            if(mTouchState!=STATE_DRAGGING){
+                if(checkTouchSlop(dx,dy)){
+                    mTouchState = STATE_DRAGGING;
+                    notifyGesturePhase(PHASE_DRAGGING);
+                    resetPrediction();
+                }
+            }else if(mHistoricalSamplesEnabled){
+                mPendingDrag = true;
+                mPendingMotionX = x;
+                mPendingMotionY = y;
+            }else
+                dragTo(x,y);
+        }
+    }
+
+    //一个ACTION_MOVE中所有sample合并后的结果，只回调一次
+    private void flushPendingMove(){
+        if(mPendingScale.hasScale()){
+            trackLatency();
+            //合成的scale可能带有剩余的平移，整个delta一起交出去
+            if(mFrameCoalescingEnabled){
+                mFrameDelta.postConcat(mPendingScale);
+                mFrameRunnable.schedule();
+            }else
+                dispatchDelta(mPendingScale);
+            mPendingScale.reset();
+        }
+
+        if(mPendingDrag){
+            dragTo(mPendingMotionX,mPendingMotionY);
+            mPendingDrag = false;
+        }
+    }
+
+    /*
+        x、y是手指的位置，与上一次的差交给Callback
+        开启prediction时再加上预测量取整后与上一次的差，内容始终比手指多偏移mPredictAppliedX/Y
+     */
+    private void dragTo(float x,float y){
+        int dx = (int) (x-mLastMotionX);
+        int dy = (int) (y-mLastMotionY);
+        if(mPredictionEnabled){
+            predictDrag();
+            final int offsetX = Math.round(mPredictX.getOffset());
+            final int offsetY = Math.round(mPredictY.getOffset());
+            dx += offsetX-mPredictAppliedX;
+            dy += offsetY-mPredictAppliedY;
+            mPredictAppliedX = offsetX;
+            mPredictAppliedY = offsetY;
+        }
+        doDrag(dx,dy);
+        mLastMotionX = x;
+        mLastMotionY = y;
+    }
+
+    //手指离开、pointer或者状态变化时调用，内容移回手指的位置，fling从实际的位置开始
+    private void resetPrediction(){
+        if(mPredictX==null)
+            return;
+        if(mPredictAppliedX!=0 || mPredictAppliedY!=0){
+            doDrag(-mPredictAppliedX,-mPredictAppliedY);
+            mPredictAppliedX = 0;
+            mPredictAppliedY = 0;
+        }
+        mPredictX.reset();
+        mPredictY.reset();
+        mPredictSpanX.reset();
+        mPredictSpanY.reset();
+    }
+
+    //velocity直接用fling的VelocityTracker，单位px/ms
+    private void predictDrag(){
+        mVelocityTracker.computeCurrentVelocity(1);
+        mPredictX.predict(mVelocityTracker.getXVelocity(mActivePointerId));
+        mPredictY.predict(mVelocityTracker.getYVelocity(mActivePointerId));
+    }
+
+    /*
+        所有sample都用来计算span的velocity，只有最新的sample才外推
+        外推后的span不小于实际的一半，避免比例变成负数
+     */
+    private void predictSpan(MotionEvent ev,int historyPos){
+        final long time = historyPos==HISTORY_CURRENT ? ev.getEventTime() : ev.getHistoricalEventTime(historyPos);
+        mPredictSpanX.addSample(time,mInstantSpanX);
+        mPredictSpanY.addSample(time,mInstantSpanY);
+        if(historyPos!=HISTORY_CURRENT)
+            return;
+
+        mInstantSpanX = Math.max(mInstantSpanX+mPredictSpanX.predict(),mInstantSpanX/2);
+        mInstantSpanY = Math.max(mInstantSpanY+mPredictSpanY.predict(),mInstantSpanY/2);
+    }
+
+    private static float getX(MotionEvent ev,int pointerIndex,int historyPos){
+        return historyPos==HISTORY_CURRENT ? ev.getX(pointerIndex) : ev.getHistoricalX(pointerIndex,historyPos);
+    }
+
+    private static float getY(MotionEvent ev,int pointerIndex,int historyPos){
+        return historyPos==HISTORY_CURRENT ? ev.getY(pointerIndex) : ev.getHistoricalY(pointerIndex,historyPos);
+    }
+
+    private boolean checkTouchSlop(int dx, int dy) {
+        return PointerDigest.exceedsTouchSlop(dx,dy,mTouchSlop,mCallback.canDragHorizontal(),mCallback.canDragVertical());
     }
 
     private final static long TOUCH_STABILIZE_TIME = 128;
@@ -289,51 +958,67 @@ public class ViewTransHelper {
     private float mTouchUpper,mTouchLower;
     private float mTouchHistoryLastAccepted;
     private long mTouchHistoryLastAcceptedTime;
+    //每个事件的touch history只更新一次，优先合并到digest的遍历中
+    private boolean mTouchHistoryPending;
+    private boolean mTouchHistoryAccept;
+    private float mTouchMajorTotal;
+    private int mTouchMajorSamples;
 
+    //单独更新touch history，没有经过digest的事件使用
     private void addTouchHistory(MotionEvent ev) {
-        final long currentTime = SystemClock.uptimeMillis();
+        beginTouchHistory();
         final int count = ev.getPointerCount();
-        boolean accept = currentTime - mTouchHistoryLastAcceptedTime >= TOUCH_STABILIZE_TIME;
-        float total = 0;
-        int sampleCount = 0;
-        for (int i = 0; i < count; i++) {
-            final boolean hasLastAccepted = !Float.isNaN(mTouchHistoryLastAccepted);
-            final int historySize = ev.getHistorySize();
-            final int pointerSampleCount = historySize + 1;
-            for (int h = 0; h < pointerSampleCount; h++) {
-                float major;
-                if (h < historySize) {
-                    major = ev.getHistoricalTouchMajor(i, h);
-                } else {
-                    major = ev.getTouchMajor(i);
-                }
-                if (major < mTouchMinMajor) major = mTouchMinMajor;
-                total += major;
+        for (int i = 0; i < count; i++)
+            addTouchMajors(ev,i);
+        endTouchHistory(ev);
+    }
 
-                if (Float.isNaN(mTouchUpper) || major > mTouchUpper) {
-                    mTouchUpper = major;
-                }
-                if (Float.isNaN(mTouchLower) || major < mTouchLower) {
-                    mTouchLower = major;
-                }
+    private void beginTouchHistory() {
+        mTouchHistoryAccept = SystemClock.uptimeMillis() - mTouchHistoryLastAcceptedTime >= TOUCH_STABILIZE_TIME;
+        mTouchMajorTotal = 0;
+        mTouchMajorSamples = 0;
+    }
 
-                if (hasLastAccepted) {
-                    final int directionSig = (int) Math.signum(major - mTouchHistoryLastAccepted);
-                    if (directionSig != mTouchHistoryDirection ||
-                            (directionSig == 0 && mTouchHistoryDirection == 0)) {
-                        mTouchHistoryDirection = directionSig;
-                        mTouchHistoryLastAcceptedTime = h < historySize ? ev.getHistoricalEventTime(h)
-                                : ev.getEventTime();
-                        accept = false;
-                    }
+    //pointer i的当前以及历史sample的touch major
+    private void addTouchMajors(MotionEvent ev,int i) {
+        final boolean hasLastAccepted = !Float.isNaN(mTouchHistoryLastAccepted);
+        final int historySize = ev.getHistorySize();
+        final int pointerSampleCount = historySize + 1;
+        for (int h = 0; h < pointerSampleCount; h++) {
+            float major;
+            if (h < historySize) {
+                major = ev.getHistoricalTouchMajor(i, h);
+            } else {
+                major = ev.getTouchMajor(i);
+            }
+            if (major < mTouchMinMajor) major = mTouchMinMajor;
+            mTouchMajorTotal += major;
+
+            if (Float.isNaN(mTouchUpper) || major > mTouchUpper) {
+                mTouchUpper = major;
+            }
+            if (Float.isNaN(mTouchLower) || major < mTouchLower) {
+                mTouchLower = major;
+            }
+
+            if (hasLastAccepted) {
+                final int directionSig = (int) Math.signum(major - mTouchHistoryLastAccepted);
+                if (directionSig != mTouchHistoryDirection ||
+                        (directionSig == 0 && mTouchHistoryDirection == 0)) {
+                    mTouchHistoryDirection = directionSig;
+                    mTouchHistoryLastAcceptedTime = h < historySize ? ev.getHistoricalEventTime(h)
+                            : ev.getEventTime();
+                    mTouchHistoryAccept = false;
                 }
             }
-            sampleCount += pointerSampleCount;
         }
+        mTouchMajorSamples += pointerSampleCount;
+    }
 
-        final float avg = total / sampleCount;
+    private void endTouchHistory(MotionEvent ev) {
+        final float avg = mTouchMajorTotal / mTouchMajorSamples;
 
-        if (accept) {
+        if (mTouchHistoryAccept) {
             float newAccepted = (mTouchUpper + mTouchLower + avg) / 3;
             mTouchUpper = (mTouchUpper + newAccepted) / 2;
             mTouchLower = (mTouchLower + newAccepted) / 2;
@@ -341,6 +1026,7 @@ public class ViewTransHelper {
             mTouchHistoryDirection = 0;
             mTouchHistoryLastAcceptedTime = ev.getEventTime();
         }
+        mTouchHistoryPending = false;
     }
 
     /**
@@ -356,74 +1042,249 @@ public class ViewTransHelper {
     }
 
     private void refreshInstantScaleInfo(MotionEvent ev){
+        refreshInstantScaleInfo(ev,HISTORY_CURRENT);
+    }
+
+    /*
+        digest：一次遍历pointer，读出坐标到缓存数组，需要时同时更新touch history，
+        focus、span由core中的PointerDigest在缓存数组上计算，不再访问MotionEvent
+     */
+    private void refreshInstantScaleInfo(MotionEvent ev,int historyPos){
         final int action = ev.getActionMasked();
         final boolean pointerUp = action == MotionEvent.ACTION_POINTER_UP;
         final int skipIndex = pointerUp ? ev.getActionIndex() : -1;
 
-        float sumX = 0, sumY = 0;
         final int count = ev.getPointerCount();
-        final int div = pointerUp ? count - 1 : count;
+        if (count > mDigestX.length) {
+            mDigestX = new float[count];
+            mDigestY = new float[count];
+        }
+        final float[] xs = mDigestX;
+        final float[] ys = mDigestY;
+
+        final boolean touchHistory = mTouchHistoryPending;
+        if (touchHistory) beginTouchHistory();
 
         for (int i = 0; i < count; i++) {
+            if (touchHistory) addTouchMajors(ev,i);
             if (skipIndex == i) continue;
-            sumX += ev.getX(i);
-            sumY += ev.getY(i);
+            xs[i] = getX(ev,i,historyPos);
+            ys[i] = getY(ev,i,historyPos);
         }
+        if (touchHistory) endTouchHistory(ev);
+
+        final PointerDigest digest = mDigest;
+        digest.compute(xs,ys,count,skipIndex,mTouchHistoryLastAccepted / 2);
+        mInstantFocusX = digest.getFocusX();
+        mInstantFocusY = digest.getFocusY();
+        mInstantSpanX = digest.getSpanX();
+        mInstantSpanY = digest.getSpanY();
+    }
 
-        mInstantFocusX = sumX / div;
-        mInstantFocusY = sumY / div;
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class MetricsFrameCallback implements Choreographer.FrameCallback{
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mMetricsFramePosted = false;
+            if(mMetrics!=null)
+                mMetrics.onFrame(frameTimeNanos);
+        }
+    }
 
-        float devSumX = 0, devSumY = 0;
-        for (int i = 0; i < count; i++) {
-            if (skipIndex == i) continue;
+    private class LongPressRunnable implements Runnable{
+        @Override
+        public void run() {
+            if(!mTapCandidate || mOnLongPressListener==null)
+                return;
+            //long press之后ACTION_UP不再算tap
+            mTapCandidate = false;
+            mOnLongPressListener.onLongPress(mTapDownX,mTapDownY);
+        }
+    }
 
-            final float touchSize = mTouchHistoryLastAccepted / 2;
-            devSumX += Math.abs(ev.getX(i) - mInstantFocusX) + touchSize;
-            devSumY += Math.abs(ev.getY(i) - mInstantFocusY) + touchSize;
+    private class FrameRunnable implements Runnable{
+        private boolean mScheduled;
+
+        void schedule(){
+            if(mScheduled)
+                return;
+            mScheduled = true;
+            postAnimation(this);
         }
-        final float devX = devSumX / div;
-        final float devY = devSumY / div;
 
-        mInstantSpanX = devX * 2;
-        mInstantSpanY = devY * 2;
+        @Override
+        public void run() {
+            mScheduled = false;
+            flushFrameDelta();
+        }
+    }
+
+    //缩放动画，按对数插值，每帧只把与上一帧的比例交给Callback
+    private class ZoomRunnable implements Runnable{
+        private Interpolator mInterpolator;
+        private int mDuration;
+
+        private boolean mRunning;
+        //已经post、还没有运行，同一帧内重新start时不再重复post
+        private boolean mPosted;
+        private long mStartTime;
+        private float mTargetScaleX,mTargetScaleY;
+        private float mAppliedScaleX,mAppliedScaleY;
+        private float mPivotX,mPivotY;
+
+        ZoomRunnable(int duration){
+            mDuration = duration;
+        }
+
+        void start(float sx,float sy,float px,float py){
+            //interpolator为null时使用默认的
+            if(mInterpolator==null)
+                mInterpolator = new DecelerateInterpolator();
+            mTargetScaleX = sx;
+            mTargetScaleY = sy;
+            mAppliedScaleX = 1;
+            mAppliedScaleY = 1;
+            mPivotX = px;
+            mPivotY = py;
+            mStartTime = AnimationUtils.currentAnimationTimeMillis();
+            mRunning = true;
+            notifyGesturePhase(PHASE_ZOOMING);
+            if(mMetrics!=null)
+                mMetrics.beginFrames();
+            post();
+        }
+
+        void cancel(){
+            mRunning = false;
+            if(mPosted){
+                mPosted = false;
+                removeAnimation(this);
+            }
+        }
+
+        private void post(){
+            if(mPosted)
+                return;
+            mPosted = true;
+            postAnimation(this);
+            scheduleMetricsFrame();
+        }
+
+        @Override
+        public void run() {
+            mPosted = false;
+            if(!mRunning)
+                return;
+
+            final long now = AnimationUtils.currentAnimationTimeMillis();
+            if(mMetrics!=null){
+                mMetrics.zoomFrames++;
+                recordMetricsFrame();
+            }
+
+            float t = (now-mStartTime)*1f/mDuration;
+            if(t>=1) {
+                t = 1;
+                mRunning = false;
+            }
+
+            final float fraction = mInterpolator.getInterpolation(t);
+            float scaleX = (float) Math.pow(mTargetScaleX,fraction);
+            float scaleY = (float) Math.pow(mTargetScaleY,fraction);
+            //动画本身就是每帧一次，不再经过frame coalescing
+            dispatchScale(scaleX/mAppliedScaleX,scaleY/mAppliedScaleY,mPivotX,mPivotY);
+            mAppliedScaleX = scaleX;
+            mAppliedScaleY = scaleY;
+
+            if(mRunning)
+                post();
+            else{
+                maybeReportMetrics();
+                maybeSettleGesture();
+            }
+        }
     }
 
     private class ScrollRunnable implements Runnable{
-        private Scroller mScroller;
+        private FlingScroller mScroller;
         private int mLastX,mLastY;
 
-        ScrollRunnable(Context context){
-            mScroller = new Scroller(context);
+        ScrollRunnable(ViewTransConfig config){
+            mScroller = new FlingScroller(config.ppi,config.scrollFriction);
         }
 
         void startFling(int xVel,int yVel){
-            mTouchState = STATE_SETTLING;
             mLastX = 0;
             mLastY = 0;
-            mScroller.fling(0,0,xVel,yVel,Integer.MIN_VALUE,Integer.MAX_VALUE,Integer.MIN_VALUE,Integer.MAX_VALUE);
-            ViewCompat.postOnAnimation(mRootView,this);
+            if(mFlingRangeCallback!=null){
+                //用真实的边界，到达边界的方向不会再产生位移，两个方向都到达时Scroller自己结束
+                mFlingRangeCallback.getFlingRange(mFlingRange);
+                mScroller.fling(0,0,xVel,yVel,mFlingRange.left,mFlingRange.right,mFlingRange.top,mFlingRange.bottom,
+                        AnimationUtils.currentAnimationTimeMillis());
+                if(mScroller.getFinalX()==0 && mScroller.getFinalY()==0){
+                    mScroller.abortAnimation();
+                    mTouchState = STATE_IDLE;
+                    return;
+                }
+            }else
+                mScroller.fling(0,0,xVel,yVel,Integer.MIN_VALUE,Integer.MAX_VALUE,Integer.MIN_VALUE,Integer.MAX_VALUE,
+                        AnimationUtils.currentAnimationTimeMillis());
+
+            mTouchState = STATE_SETTLING;
+            notifyGesturePhase(PHASE_FLINGING);
+            if(mSettlePredictionListener!=null)
+                mSettlePredictionListener.onFlingPredicted(mScroller.getFinalX(),mScroller.getFinalY());
+            if(mMetrics!=null)
+                mMetrics.beginFrames();
+            postAnimation(this);
+            scheduleMetricsFrame();
         }
 
+        //ACTION_DOWN接住fling时调用，已经post的这一帧一起移除，不会再走到finish把状态改回IDLE
         void abortAnimation(){
             if(!mScroller.isFinished())
                 mScroller.abortAnimation();
+            removeAnimation(this);
         }
 
         @Override
         public void run() {
-            if(mScroller.computeScrollOffset()) {
+            if(mScroller.computeScrollOffset(AnimationUtils.currentAnimationTimeMillis())) {
                 int curX = mScroller.getCurrX();
                 int curY = mScroller.getCurrY();
-                boolean over = doFling(curX-mLastX,curY-mLastY);
-                if(over) {
-                    mScroller.abortAnimation();
-                    mTouchState = STATE_IDLE;
-                }
+                int dx = curX-mLastX;
+                int dy = curY-mLastY;
                 mLastX = curX;
                 mLastY = curY;
-                ViewCompat.postOnAnimation(mRootView,this);
+
+                if(mMetrics!=null){
+                    mMetrics.flingFrames++;
+                    if(dx==0 && dy==0)
+                        mMetrics.zeroDeltaFlingFrames++;
+                    recordMetricsFrame();
+                }
+
+                //位移为0的帧不回调、不invalidate
+                if((dx!=0 || dy!=0) && doFling(dx,dy)) {
+                    mScroller.abortAnimation();
+                    finish();
+                    return;
+                }
+
+                if(mScroller.isFinished())
+                    finish();
+                else{
+                    postAnimation(this);
+                    scheduleMetricsFrame();
+                }
             }else
-                mTouchState = STATE_IDLE;
+                finish();
+        }
+
+        private void finish(){
+            mTouchState = STATE_IDLE;
+            maybeReportMetrics();
+            maybeSettleGesture();
         }
     }
 
@@ -447,8 +1308,89 @@ public class ViewTransHelper {
         boolean onFling(int dx, int dy);
     }
 
+    //可选，需要只invalidate变化的区域时，Callback同时实现它
+    public interface DirtyBoundsCallback extends Callback{
+
+        //当前shape在view中的范围
+        void getDirtyBounds(Rect out);
+    }
+
+    //可选，Callback同时实现它时，fling使用真实的边界
+    public interface FlingRangeCallback extends Callback{
+
+        //从当前位置出发还能平移的范围：left、right为x方向的最小、最大值，top、bottom为y方向的
+        void getFlingRange(Rect out);
+    }
+
+    /*
+        可选，Callback同时实现它时，drag、scale以及一帧内合并后的drag+scale都通过onTransform回调，
+        onDrag、onScale不再被调用，fling仍然是onFling
+        变换的顺序：先围绕(px,py)缩放sx、sy倍，再平移dx、dy，实现只需要修正一次边界
+     */
+    public interface TransformCallback extends Callback{
+
+        void onTransform(float sx, float sy, float px, float py, float dx, float dy);
+    }
+
+    //可选，Callback同时实现它时才能使用OnGestureLifecycleListener
+    public interface TransformStateCallback extends Callback{
+
+        Matrix getTransformMatrix();
+
+        Rect getCurrentShape();
+    }
+
     public interface OnTapListener{
         boolean onTap(float x, float y);
     }
 
+    /*
+        预测的结果是ViewTransHelper交给Callback之前的值，Callback修正以后实际的结果可能不同
+        InsetTransHelper、OutsetTransHelper会把它转换为修正后的matrix和shape，见OnPredictedSettleListener
+     */
+    public interface OnSettlePredictionListener{
+
+        //fling开始时，Scroller计算出的总位移
+        void onFlingPredicted(int dx, int dy);
+
+        //缩放动画开始时，围绕(px,py)总共缩放sx、sy倍
+        void onZoomPredicted(float sx, float sy, float px, float py);
+    }
+
+    //fling、缩放动画结束时的matrix和shape，对象会被复用
+    public interface OnPredictedSettleListener{
+        void onPredictedSettle(Matrix matrix, Rect shape);
+    }
+
+    /*
+        level由setOnZoomLevelChangeListener的breakpoints决定，0是最小的
+        scale是相对于setup时shape大小的倍数
+     */
+    public interface OnZoomLevelChangeListener{
+        void onZoomLevelChanged(int level, float scale);
+    }
+
+    /*
+        onGestureStart - 第一次drag、scale、fling或缩放动画开始时
+        onGestureActive - 进入新的阶段时，phase是PHASE_DRAGGING等
+        onGestureSettled - 手指离开且fling、缩放动画都结束，matrix、shape是最终的结果，对象会被复用
+        移动中可以只画预览，settled时再做开销大的高质量绘制
+     */
+    public interface OnGestureLifecycleListener{
+
+        void onGestureStart();
+
+        void onGestureActive(int phase);
+
+        void onGestureSettled(Matrix matrix, Rect shape);
+    }
+
+    public interface OnLongPressListener{
+        void onLongPress(float x, float y);
+    }
+
+    public interface OnGestureMetricsListener{
+        void onGestureMetrics(GestureMetrics metrics);
+    }
+
 }